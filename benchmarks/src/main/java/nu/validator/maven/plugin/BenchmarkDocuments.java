@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+
+/**
+ * Synthetic documents of the supported types, with a few errors and
+ * warnings sprinkled in, as found in real sites.
+ *
+ * @author Nicolai Ehemann
+ */
+final class BenchmarkDocuments {
+
+  /**
+   * Every n-th element of a document is invalid
+   */
+  private static final int ERROR_INTERVAL = 50;
+
+  private BenchmarkDocuments() {
+  }
+
+  /**
+   * @param elements the number of repeated elements in the document
+   * @return a document of the type
+   */
+  static String create(final DocumentType documentType, final int elements) {
+    final StringBuilder document = new StringBuilder();
+    switch (documentType) {
+      case HTML:
+        document.append("<!DOCTYPE html>\n<html lang=\"en\"><head><title>Benchmark</title></head><body>\n");
+        appendElements(document, elements, "<p id=\"p%d\" class=\"text\">Paragraph %<d with <a href=\"#p%<d\">a link</a></p>\n",
+            "<p id=\"p%d\"><div>misplaced %<d</div></p>\n");
+        document.append("</body></html>\n");
+        break;
+      case XHTML:
+        document.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<html xmlns=\"http://www.w3.org/1999/xhtml\" lang=\"en\">")
+            .append("<head><title>Benchmark</title></head><body>\n");
+        appendElements(document, elements, "<p id=\"p%d\" class=\"text\">Paragraph %<d with <a href=\"#p%<d\">a link</a></p>\n",
+            "<p id=\"p%d\" align=\"left\">obsolete %<d</p>\n");
+        document.append("</body></html>\n");
+        break;
+      case SVG:
+        document.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 1000 1000\">\n");
+        appendElements(document, elements, "<rect id=\"r%d\" x=\"%<d\" y=\"%<d\" width=\"10\" height=\"10\" fill=\"red\"/>\n",
+            "<rect id=\"r%d\" x=\"%<d\" unknown=\"1\"/>\n");
+        document.append("</svg>\n");
+        break;
+      case CSS:
+        appendElements(document, elements, ".class%d { color: #%<06d; margin: %<dpx 0; }\n",
+            ".class%d { colour: red; }\n");
+        break;
+      default:
+    }
+    return document.toString();
+  }
+
+  private static void appendElements(final StringBuilder document, final int elements, final String valid, final String invalid) {
+    for (int i = 0; i < elements; i++) {
+      document.append(String.format(i % ERROR_INTERVAL == ERROR_INTERVAL - 1 ? invalid : valid, i));
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to check a single file of each document type with a set up
+ * validator, for small, medium and huge files.
+ *
+ * @author Nicolai Ehemann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CheckBenchmark {
+
+  @Param({"HTML", "CSS", "SVG", "XHTML"})
+  private DocumentType documentType;
+
+  /**
+   * Number of elements in the file: small, medium and huge
+   */
+  @Param({"10", "1000", "100000"})
+  private int elements;
+
+  private Path directory;
+
+  private File file;
+
+  private ValidationWorker worker;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("vnu-benchmark");
+    file = directory.resolve("document." + documentType.getExtensions().iterator().next()).toFile();
+    Files.write(file.toPath(), BenchmarkDocuments.create(documentType, elements).getBytes(StandardCharsets.UTF_8));
+    worker = new ValidationWorker(true, directory.toFile(), () -> false);
+    // set up the schema outside of the measurement
+    worker.validate(file, documentType);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    worker.release();
+    Files.deleteIfExists(file.toPath());
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public List<ValidationError> check() throws IOException {
+    return worker.validate(file, documentType);
+  }
+}
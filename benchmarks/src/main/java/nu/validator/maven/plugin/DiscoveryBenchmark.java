@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.FileSetCfg;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to find the files of a fileset in a synthetic directory tree: a site
+ * with nested directories of pages and assets, plus a large node_modules
+ * directory to be excluded.
+ *
+ * @author Nicolai Ehemann
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DiscoveryBenchmark {
+
+  private static final int FILES_PER_DIRECTORY = 20;
+
+  private static final int DIRECTORIES_PER_LEVEL = 5;
+
+  /**
+   * Depth of the directory trees, 4 makes about 15000 files in each
+   */
+  @Param({"2", "4"})
+  private int depth;
+
+  @Param({"1", "4"})
+  private int threads;
+
+  /**
+   * Whether node_modules is excluded, or filtered by the glob only
+   */
+  @Param({"true", "false"})
+  private boolean exclude;
+
+  private Path directory;
+
+  private FileSetCfg fileset;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("vnu-benchmark");
+    createTree(directory, depth);
+    createTree(directory.resolve("node_modules"), depth);
+    fileset = new FileSetCfg();
+    fileset.setDirectory(directory.toString());
+    fileset.setIncludes(Collections.singletonList("**/*.html"));
+    if (exclude) {
+      fileset.setExcludes(Collections.singletonList("**/node_modules/**"));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(final Path dir, final IOException ex) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  @Benchmark
+  public List<String> findSorted() throws IOException {
+    return new FileDiscovery(FileSystems.getDefault(), directory, fileset, threads, new SystemStreamLog()).findSorted();
+  }
+
+  private static void createTree(final Path root, final int levels) throws IOException {
+    Files.createDirectories(root);
+    for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+      Files.createFile(root.resolve("page" + i + (i % 2 == 0 ? ".html" : ".css")));
+    }
+    if (levels > 0) {
+      for (int i = 0; i < DIRECTORIES_PER_LEVEL; i++) {
+        createTree(root.resolve("dir" + i), levels - 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.FilterCfg;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to decide whether a message is filtered, for typical numbers of
+ * filters. The messages mostly repeat, like on real sites, with a share of
+ * messages seen only once.
+ *
+ * @author Nicolai Ehemann
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+  private static final String[] REGEXES = {
+    "Consider adding a",
+    "Duplicate ID \"[a-zA-Z0-9.]*\"",
+    "The “type” attribute is unnecessary",
+    "Attribute “[a-z-]+” not allowed on element “div”",
+    ".*Trailing slash on void elements.*",
+    "^CSS: “[a-z-]+”: Property “[a-z-]+” doesn't exist\\.$",
+    "Element “(?:style|script)” not allowed as child",
+    "Bad value “[^”]*” for attribute “href”",
+  };
+
+  private static final String[] MESSAGES = {
+    "Consider adding a “lang” attribute to the “html” start tag to declare the language of this document.",
+    "Duplicate ID “a”.",
+    "The first occurrence of ID “a” was here.",
+    "Attribute “th:text” not allowed on element “div” at this point.",
+    "Trailing slash on void elements has no effect and interacts badly with unquoted attribute values.",
+    "CSS: “colour”: Property “colour” doesn't exist.",
+    "Element “div” not allowed as child of element “span” in this context.",
+    "Stray end tag “p”.",
+  };
+
+  /**
+   * Every n-th message is unique, so it is not memorised
+   */
+  private static final int UNIQUE_INTERVAL = 10;
+
+  /**
+   * Number of messages checked per invocation
+   */
+  private static final int MESSAGE_COUNT = 1000;
+
+  @Param({"1", "8", "64"})
+  private int filters;
+
+  private MessageFilter messageFilter;
+
+  private List<ValidationError> messages;
+
+  private int unique;
+
+  @Setup(Level.Trial)
+  public void setUp() throws MojoFailureException {
+    final List<FilterCfg> filterCfgs = new ArrayList<>();
+    for (int i = 0; i < filters; i++) {
+      final FilterCfg filterCfg = new FilterCfg();
+      // beyond the typical filters, add similar ones not matching anything
+      filterCfg.setRegex(i < REGEXES.length ? REGEXES[i] : REGEXES[i % REGEXES.length] + " \\(" + i + "\\)");
+      filterCfg.compilePattern();
+      filterCfgs.add(filterCfg);
+    }
+    messageFilter = new MessageFilter(filterCfgs);
+    messages = new ArrayList<>();
+    for (int i = 0; i < MESSAGE_COUNT; i++) {
+      messages.add(new ValidationError(i % 2 == 0 ? ValidationError.Type.ERROR : ValidationError.Type.WARNING,
+          "page.html", i, 1, MESSAGES[i % MESSAGES.length]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MESSAGE_COUNT)
+  public int isFiltered() {
+    int filtered = 0;
+    for (int i = 0; i < messages.size(); i++) {
+      ValidationError message = messages.get(i);
+      if (i % UNIQUE_INTERVAL == 0) {
+        message = new ValidationError(message.getType(), message.getPath(), i, 1, message.getMessage() + " " + unique++);
+      }
+      if (messageFilter.isFiltered(message)) {
+        filtered++;
+      }
+    }
+    return filtered;
+  }
+}
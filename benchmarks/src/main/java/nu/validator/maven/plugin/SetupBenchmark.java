@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package nu.validator.maven.plugin;
+
+import java.util.concurrent.TimeUnit;
+
+import nu.validator.validation.SimpleDocumentValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Cost of getting a set up document validator for a schema: setting one up
+ * in a fresh JVM, setting one up in a JVM that did so before, and taking one
+ * from the JVM wide pool.
+ *
+ * @author Nicolai Ehemann
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SetupBenchmark {
+
+  @Param({NVUValidator.SCHEMA_URL_HTML, NVUValidator.SCHEMA_URL_SVG, NVUValidator.SCHEMA_URL_XHTML})
+  private String schemaUrl;
+
+  /**
+   * Only the first invocation in each fork sets up a schema in a cold JVM
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 0)
+  @Measurement(iterations = 1)
+  @Fork(10)
+  public SimpleDocumentValidator cold() throws Exception {
+    return setUp(schemaUrl);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @Warmup(iterations = 3, time = 5)
+  @Measurement(iterations = 5, time = 5)
+  @Fork(1)
+  public SimpleDocumentValidator warm() throws Exception {
+    return setUp(schemaUrl);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Warmup(iterations = 3, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  @Fork(1)
+  public SimpleDocumentValidator pooled(final Pool pool) {
+    final SharedDocumentValidator validator = SharedDocumentValidator.acquire(schemaUrl, new DefaultHandler());
+    validator.release();
+    return validator.getDocumentValidator();
+  }
+
+  /**
+   * Sets up a validator the way the pool does
+   */
+  private static SimpleDocumentValidator setUp(final String schemaUrl) throws Exception {
+    final DefaultHandler errorHandler = new DefaultHandler();
+    final SimpleDocumentValidator documentValidator = new SimpleDocumentValidator(true, false, true);
+    documentValidator.setUpMainSchema(schemaUrl, errorHandler);
+    documentValidator.setUpValidatorAndParsers(errorHandler, false, false);
+    return documentValidator;
+  }
+
+  /**
+   * The JVM wide pool, holding a set up validator for the schema
+   */
+  @State(Scope.Thread)
+  public static class Pool {
+
+    @Setup(Level.Trial)
+    public void setUp(final SetupBenchmark benchmark) {
+      SharedDocumentValidator.acquire(benchmark.schemaUrl, new DefaultHandler()).release();
+    }
+  }
+}
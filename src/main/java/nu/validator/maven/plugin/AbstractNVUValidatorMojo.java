@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.FileSetCfg;
+import nu.validator.maven.plugin.configuration.FilterCfg;
+import nu.validator.maven.plugin.configuration.MojoInvalidConfigurationException;
+import nu.validator.maven.plugin.configuration.ReportFormat;
+import nu.validator.maven.plugin.configuration.ValidatorCfg;
+import java.io.File;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Configuration shared by the goals validating HTML / CSS / SVG files
+ */
+public abstract class AbstractNVUValidatorMojo extends AbstractMojo {
+
+  private static final long DEFAULT_DAEMON_IDLE_TIMEOUT = 180;
+
+  /**
+   * The Maven Project Object
+   */
+  @Parameter(defaultValue = "${project}", readonly = true, required = true)
+  private MavenProject project;
+
+  /**
+   * The fileset configuration
+   */
+  @Parameter
+  private List<FileSetCfg> filesets = new ArrayList<>();
+
+  /**
+   * Fail on first error
+   */
+  @Parameter
+  private boolean failfast;
+
+  /**
+   * Use ASCII quotes instead of unicode quotes (default true)
+   */
+  @Parameter
+  private boolean asciiquotes = true;
+
+  /**
+   * Validator configuration
+   */
+  @Parameter
+  private ValidatorCfg validator = new ValidatorCfg();
+
+  /**
+   * Number of threads validating files in parallel (default: number of
+   * available processors)
+   */
+  @Parameter(property = "vnu.threads")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Directory for files written by the plugin, like the validation cache
+   */
+  @Parameter(defaultValue = "${project.build.directory}/vnu")
+  private File outputDirectory;
+
+  /**
+   * Cache validation results and only validate files changed since the last
+   * run. Also keeps the validation time of each file, to start the files
+   * taking longest first.
+   */
+  @Parameter(property = "vnu.cache")
+  private boolean cache;
+
+  /**
+   * Only validate files added or modified since the merge base of this git
+   * revision and HEAD, like origin/main
+   */
+  @Parameter(property = "vnu.changedSince")
+  private String changedSince;
+
+  /**
+   * Validate with a background validator JVM, which is started by the first
+   * build and kept running for later builds, so they skip setting up v.Nu
+   */
+  @Parameter(property = "vnu.daemon")
+  private boolean daemon;
+
+  /**
+   * Minutes the validation daemon keeps running without requests (default 180)
+   */
+  @Parameter(property = "vnu.daemonIdleTimeout")
+  private long daemonIdleTimeout = DEFAULT_DAEMON_IDLE_TIMEOUT;
+
+  /**
+   * Log timing metrics per phase and document type, and the slowest files,
+   * and write them to metrics.json in the output directory
+   */
+  @Parameter(property = "vnu.metrics")
+  private boolean metrics;
+
+  /**
+   * Machine readable reports to write to the output directory, any of
+   * JSONL, SARIF and JUNIT
+   */
+  @Parameter(property = "vnu.reports")
+  private List<ReportFormat> reports = new ArrayList<>();
+
+  /**
+   * Validate only a part of the files, like 3/8 for the third of eight
+   * parts, to split the validation across machines. The results are written
+   * to the output directory, to be combined by the merge goal.
+   */
+  @Parameter(property = "vnu.shard")
+  private String shard;
+
+  private final FileSystem fileSystem;
+
+  AbstractNVUValidatorMojo(final FileSystem fileSystem) {
+    this.fileSystem = fileSystem;
+  }
+
+  AbstractNVUValidatorMojo() {
+    this(FileSystems.getDefault());
+  }
+
+  /**
+   * @return a validator for the configured filesets
+   */
+  final NVUValidator createValidator() throws MojoFailureException {
+    return new NVUValidator(this.project, this.fileSystem, this.getLog(), prepareConfiguration());
+  }
+
+  /**
+   * Adjusts the configuration to the goal, before the validator is created.
+   *
+   * @throws MojoFailureException if the configuration is invalid
+   */
+  void configure(final NVUValidatorConfiguration configuration) throws MojoFailureException {
+  }
+
+  /**
+   * @return whether the goal validates the filesets, which are required then
+   */
+  boolean validatesFilesets() {
+    return true;
+  }
+
+  /**
+   * @return the project the goal runs for
+   */
+  final MavenProject getProject() {
+    return project;
+  }
+
+  private NVUValidatorConfiguration prepareConfiguration() throws MojoFailureException {
+    if (threads < 1) {
+      throw new MojoInvalidConfigurationException("<threads> must be at least 1");
+    }
+    if (daemonIdleTimeout < 1) {
+      throw new MojoInvalidConfigurationException("<daemonIdleTimeout> must be at least 1");
+    }
+    compileRegexes(validator.getFilters());
+    final NVUValidatorConfiguration configuration = new NVUValidatorConfiguration();
+    configuration.setFailfast(failfast);
+    configuration.setAsciiquotes(asciiquotes);
+    configuration.setValidatorCfg(validator);
+    configuration.setFilesets(filesets);
+    configuration.setThreads(threads);
+    if (cache) {
+      configuration.setCacheFile(new File(outputDirectory, "validation-cache.bin"));
+      configuration.setDurationsFile(new File(outputDirectory, "durations.bin"));
+    }
+    if (changedSince != null && !changedSince.trim().isEmpty()) {
+      configuration.setChangedSince(changedSince.trim());
+    }
+    configuration.setDaemon(daemon);
+    configuration.setDaemonIdleTimeout(daemonIdleTimeout);
+    if (metrics) {
+      configuration.setMetricsFile(new File(outputDirectory, "metrics.json"));
+    }
+    configuration.setMetrics(metrics);
+    configuration.setReports(reports);
+    configuration.setReportDirectory(outputDirectory);
+    if (shard != null && !shard.trim().isEmpty()) {
+      configuration.setShard(Shard.parse(shard));
+    }
+    configuration.setShardDirectory(outputDirectory);
+    configure(configuration);
+    if (validatesFilesets()) {
+      validateFilesetConfguration(configuration.getFilesets());
+    }
+
+    return configuration;
+  }
+
+  private void compileRegexes(final List<FilterCfg> filters) throws MojoFailureException {
+    for (FilterCfg filter : filters) {
+      filter.compilePattern();
+    }
+  }
+
+  private void validateFilesetConfguration(final List<FileSetCfg> configuredFilesets) throws MojoInvalidConfigurationException {
+    if (configuredFilesets == null || configuredFilesets.isEmpty()) {
+      throw new MojoInvalidConfigurationException("Missing required <filesets>");
+    }
+    for (FileSetCfg fileset : configuredFilesets) {
+      fileset.validate();
+    }
+  }
+
+  public final void setProject(final MavenProject project) {
+    this.project = project;
+  }
+
+  public final void setFilesets(final List<FileSetCfg> filesets) {
+    this.filesets = filesets;
+  }
+
+  public final void setFailfast(final boolean failfast) {
+    this.failfast = failfast;
+  }
+
+  public final void setAsciiquotes(final boolean asciiquotes) {
+    this.asciiquotes = asciiquotes;
+  }
+
+  public final void setValidator(final ValidatorCfg validator) {
+    this.validator = validator;
+  }
+
+  public final void setThreads(final int threads) {
+    this.threads = threads;
+  }
+
+  public final void setOutputDirectory(final File outputDirectory) {
+    this.outputDirectory = outputDirectory;
+  }
+
+  public final void setCache(final boolean cache) {
+    this.cache = cache;
+  }
+
+  public final void setChangedSince(final String changedSince) {
+    this.changedSince = changedSince;
+  }
+
+  public final void setDaemon(final boolean daemon) {
+    this.daemon = daemon;
+  }
+
+  public final void setDaemonIdleTimeout(final long daemonIdleTimeout) {
+    this.daemonIdleTimeout = daemonIdleTimeout;
+  }
+
+  public final void setMetrics(final boolean metrics) {
+    this.metrics = metrics;
+  }
+
+  public final void setReports(final List<ReportFormat> reports) {
+    this.reports = reports;
+  }
+
+  public final void setShard(final String shard) {
+    this.shard = shard;
+  }
+}
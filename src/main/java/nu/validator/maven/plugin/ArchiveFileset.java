@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The files of a fileset inside an archive (war, jar or zip). The entries
+ * are read straight from the archive, without extracting it.
+ *
+ * Entries are named like files, by the path of the archive followed by
+ * {@link #SEPARATOR} and the path of the entry, e.g.
+ * {@code target/app.war!/WEB-INF/views/index.html}.
+ *
+ * @author Nicolai Ehemann
+ */
+final class ArchiveFileset implements DocumentSource {
+
+  /**
+   * Separates the path of the archive from the path of the entry, as in jar URLs
+   */
+  static final String SEPARATOR = "!/";
+
+  /**
+   * Initial buffer size for entries of unknown size
+   */
+  private static final int UNKNOWN_SIZE = 8192;
+
+  private final Path archive;
+
+  private final ZipFile zipFile;
+
+  /**
+   * @param archive the archive, which is kept open until closed
+   * @throws IOException if the archive can not be read
+   */
+  ArchiveFileset(final Path archive) throws IOException {
+    this.archive = archive;
+    this.zipFile = new ZipFile(archive.toFile());
+  }
+
+  /**
+   * @param discovery matches the entries, relative to the archive's path
+   * @return the names of the entries of the fileset, sorted
+   */
+  List<String> findSorted(final FileDiscovery discovery) {
+    final List<String> files = new ArrayList<>();
+    final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      final ZipEntry entry = entries.nextElement();
+      if (!entry.isDirectory() && discovery.isPartOfFileset(archive.resolve(entry.getName()))) {
+        files.add(archive + SEPARATOR + entry.getName());
+      }
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  /**
+   * Reads the content of an entry. Entries may be read by several threads at once.
+   *
+   * @param file the name of the entry, as returned by {@link #findSorted}
+   * @return the content of the entry
+   * @throws IOException if the entry can not be read
+   */
+  @Override
+  public ByteBuffer read(final String file) throws IOException {
+    final ZipEntry entry = zipFile.getEntry(getEntryName(file));
+    if (entry == null) {
+      throw new FileNotFoundException(file);
+    }
+    try (InputStream in = zipFile.getInputStream(entry)) {
+      return FilePrefetcher.readFully(Channels.newChannel(in), entry.getSize() >= 0 ? (int) entry.getSize() : UNKNOWN_SIZE);
+    }
+  }
+
+  /**
+   * @param file the name of the entry, as returned by {@link #findSorted}
+   * @return the jar URL of the entry, reported by the validator
+   */
+  @Override
+  public String getSystemId(final String file) {
+    try {
+      return "jar:" + archive.toUri() + "!" + new URI(null, null, "/" + getEntryName(file), null).getRawPath();
+    } catch (URISyntaxException ex) {
+      throw new IllegalArgumentException(ex);
+    }
+  }
+
+  /**
+   * @return null, the type of entries is determined by their extension
+   */
+  @Override
+  public DocumentType getDocumentType(final String file) {
+    return null;
+  }
+
+  private String getEntryName(final String file) {
+    return file.substring(archive.toString().length() + SEPARATOR.length());
+  }
+
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reads the remaining content of a byte buffer, which may be memory mapped.
+ * Reading fails once the abort condition is met, so a parser reading the
+ * stream stops even if the document has no errors.
+ *
+ * @author Nicolai Ehemann
+ */
+final class ByteBufferInputStream extends InputStream {
+
+  private static final int BYTE_MASK = 0xff;
+
+  private final ByteBuffer buffer;
+
+  private final BooleanSupplier aborted;
+
+  /**
+   * @param buffer the content to read, its position is advanced while reading
+   */
+  ByteBufferInputStream(final ByteBuffer buffer) {
+    this(buffer, () -> false);
+  }
+
+  /**
+   * @param buffer the content to read, its position is advanced while reading
+   * @param aborted condition to stop reading on
+   */
+  ByteBufferInputStream(final ByteBuffer buffer, final BooleanSupplier aborted) {
+    this.buffer = buffer;
+    this.aborted = aborted;
+  }
+
+  @Override
+  public int read() throws InterruptedIOException {
+    checkAborted();
+    return buffer.hasRemaining() ? buffer.get() & BYTE_MASK : -1;
+  }
+
+  @Override
+  public int read(final byte[] bytes, final int offset, final int length) throws InterruptedIOException {
+    checkAborted();
+    final int count = Math.min(length, buffer.remaining());
+    buffer.get(bytes, offset, count);
+    return count == 0 && length > 0 ? -1 : count;
+  }
+
+  @Override
+  public long skip(final long count) {
+    final int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return buffer.remaining();
+  }
+
+  private void checkAborted() throws InterruptedIOException {
+    if (aborted.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+      throw new InterruptedIOException("Validation aborted");
+    }
+  }
+}
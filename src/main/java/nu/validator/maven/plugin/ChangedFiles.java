@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Files added or modified since the merge base of a git revision and HEAD,
+ * including uncommitted and untracked files. Only the local repository is
+ * read, remote revisions have to be fetched beforehand.
+ *
+ * @author Nicolai Ehemann
+ */
+class ChangedFiles {
+
+  private final File basedir;
+
+  private final String revision;
+
+  /**
+   * @param basedir a directory within the work tree of the repository
+   * @param revision the revision to compare with, like origin/main
+   */
+  ChangedFiles(final File basedir, final String revision) {
+    this.basedir = basedir;
+    this.revision = revision;
+  }
+
+  /**
+   * @return the canonical paths of all added or modified files
+   * @throws IOException if there is no repository or the revision is unknown
+   */
+  Set<Path> find() throws IOException {
+    final FileRepositoryBuilder builder = new FileRepositoryBuilder().readEnvironment().findGitDir(basedir);
+    if (builder.getGitDir() == null) {
+      throw new IOException("no git repository found at " + basedir);
+    }
+    try (Repository repository = builder.build()) {
+      final Path workTree = repository.getWorkTree().toPath().toRealPath();
+      final Set<Path> files = new HashSet<>();
+      for (String path : findCommitted(repository)) {
+        files.add(toCanonicalPath(workTree.resolve(path)));
+      }
+      for (String path : findUncommitted(repository)) {
+        files.add(toCanonicalPath(workTree.resolve(path)));
+      }
+      return files;
+    }
+  }
+
+  /**
+   * Resolves symbolic links, so a file is found whichever way it is reached
+   *
+   * @return the real path of an existing file, otherwise the normalized absolute path
+   */
+  static Path toCanonicalPath(final Path path) {
+    Path canonicalPath;
+    try {
+      canonicalPath = path.toRealPath();
+    } catch (IOException ex) {
+      canonicalPath = path.toAbsolutePath().normalize();
+    }
+    return canonicalPath;
+  }
+
+  /**
+   * @return the paths of the files added or modified between the merge base and HEAD
+   */
+  private Set<String> findCommitted(final Repository repository) throws IOException {
+    final ObjectId revisionId = repository.resolve(revision);
+    final ObjectId headId = repository.resolve(Constants.HEAD);
+    if (revisionId == null) {
+      throw new IOException("unknown revision " + revision);
+    } else if (headId == null) {
+      throw new IOException("no commit checked out");
+    }
+    final Set<String> paths = new HashSet<>();
+    try (RevWalk walk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+      final RevCommit revisionCommit = walk.parseCommit(revisionId);
+      final RevCommit headCommit = walk.parseCommit(headId);
+      walk.setRevFilter(RevFilter.MERGE_BASE);
+      walk.markStart(revisionCommit);
+      walk.markStart(headCommit);
+      final RevCommit mergeBase = walk.next();
+      // without common history, compare with the revision itself
+      final RevCommit base = mergeBase == null ? revisionCommit : walk.parseCommit(mergeBase);
+      treeWalk.addTree(base.getTree());
+      treeWalk.addTree(headCommit.getTree());
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(TreeFilter.ANY_DIFF);
+      while (treeWalk.next()) {
+        if (treeWalk.getFileMode(1) != FileMode.MISSING) {
+          paths.add(treeWalk.getPathString());
+        }
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * @return the paths of the files added or modified in the index or work tree
+   */
+  private Set<String> findUncommitted(final Repository repository) throws IOException {
+    final Status status;
+    try {
+      status = Git.wrap(repository).status().call();
+    } catch (GitAPIException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    }
+    final Set<String> paths = new HashSet<>();
+    paths.addAll(status.getAdded());
+    paths.addAll(status.getChanged());
+    paths.addAll(status.getModified());
+    paths.addAll(status.getUntracked());
+    return paths;
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Validates files with the validation daemon, starting the daemon if none
+ * is running for the current plugin version yet. Every thread validating
+ * files uses a connection of its own.
+ *
+ * @see ValidationDaemon
+ * @author Nicolai Ehemann
+ */
+final class DaemonClient implements Closeable {
+
+  /**
+   * Version of the protocol between client and daemon, part of the key
+   */
+  private static final int PROTOCOL_VERSION = 2;
+
+  private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private static final long STARTUP_POLL_MILLIS = 100;
+
+  /**
+   * Number of hash characters identifying a daemon
+   */
+  private static final int KEY_LENGTH = 16;
+
+  private static final Object START_LOCK = new Object();
+
+  private final int port;
+
+  private final String token;
+
+  private final String key;
+
+  private final boolean asciiQuotes;
+
+  private final File basedir;
+
+  private final Log log;
+
+  /**
+   * Idle connections to the daemon
+   */
+  private final Queue<Connection> connections = new ConcurrentLinkedQueue<>();
+
+  private final AtomicBoolean available = new AtomicBoolean(true);
+
+  private DaemonClient(final Properties registry, final String key, final boolean asciiQuotes, final File basedir, final Log log) {
+    this.port = Integer.parseInt(registry.getProperty(ValidationDaemon.PROPERTY_PORT));
+    this.token = registry.getProperty(ValidationDaemon.PROPERTY_TOKEN);
+    this.key = key;
+    this.asciiQuotes = asciiQuotes;
+    this.basedir = basedir;
+    this.log = log;
+  }
+
+  /**
+   * Connects to the daemon running for the current plugin version, starting it if necessary.
+   *
+   * @param idleTimeoutMillis the time a newly started daemon keeps running without requests
+   * @return a client connected to the daemon
+   * @throws IOException if the daemon can not be started or connected to
+   */
+  static DaemonClient connect(final boolean asciiQuotes, final File basedir, final long idleTimeoutMillis, final Log log) throws IOException {
+    final List<Path> classpath = getClasspath();
+    final String key = getKey(classpath);
+    final Path directory = Paths.get(System.getProperty("user.home"), ".vnu", "daemon");
+    Files.createDirectories(directory);
+    final Path registryFile = directory.resolve(key + ".properties");
+    // one build at a time checks for a running daemon and starts one
+    synchronized (START_LOCK) {
+      try (FileChannel lock = FileChannel.open(directory.resolve(key + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        lock.lock();
+        DaemonClient client = tryConnect(registryFile, key, asciiQuotes, basedir, log);
+        if (client == null) {
+          Files.deleteIfExists(registryFile);
+          final Path logFile = directory.resolve(key + ".log");
+          log.info("Starting validation daemon, logging to " + logFile);
+          final Process process = new ProcessBuilder(
+              Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+              "-cp", join(classpath),
+              ValidationDaemon.class.getName(),
+              registryFile.toString(), key, Long.toString(idleTimeoutMillis))
+              .redirectErrorStream(true)
+              .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile.toFile()))
+              .start();
+          client = awaitStartup(process, registryFile, key, asciiQuotes, basedir, log);
+          if (client == null) {
+            throw new IOException("validation daemon did not start, see " + logFile);
+          }
+        }
+        return client;
+      }
+    }
+  }
+
+  private static DaemonClient awaitStartup(final Process process, final Path registryFile, final String key, final boolean asciiQuotes,
+      final File basedir, final Log log) throws IOException {
+    final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+    DaemonClient client = null;
+    while (client == null && process.isAlive() && System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(STARTUP_POLL_MILLIS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while starting validation daemon");
+      }
+      client = tryConnect(registryFile, key, asciiQuotes, basedir, log);
+    }
+    return client;
+  }
+
+  /**
+   * @return a client connected to the daemon announced in the registry file, null if there is none
+   */
+  private static DaemonClient tryConnect(final Path registryFile, final String key, final boolean asciiQuotes, final File basedir,
+      final Log log) {
+    DaemonClient client = null;
+    try (InputStream in = Files.newInputStream(registryFile)) {
+      final Properties registry = new Properties();
+      registry.load(in);
+      client = new DaemonClient(registry, key, asciiQuotes, basedir, log);
+      client.connections.add(client.new Connection());
+    } catch (IOException | RuntimeException ex) {
+      client = null;
+    }
+    return client;
+  }
+
+  /**
+   * @return the class path of the plugin, to start the daemon with
+   */
+  private static List<Path> getClasspath() throws IOException {
+    final ClassLoader classLoader = ValidationDaemon.class.getClassLoader();
+    if (!(classLoader instanceof URLClassLoader)) {
+      throw new IOException("unable to determine the plugin's class path");
+    }
+    final List<Path> classpath = new ArrayList<>();
+    try {
+      for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+        classpath.add(Paths.get(url.toURI()));
+      }
+    } catch (URISyntaxException | IllegalArgumentException ex) {
+      throw new IOException("unable to determine the plugin's class path", ex);
+    }
+    return classpath;
+  }
+
+  /**
+   * @return a key identifying the class path contents and java runtime, so
+   *     a daemon is only used by the plugin version that started it
+   */
+  private static String getKey(final List<Path> classpath) throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+    final StringBuilder identity = new StringBuilder();
+    identity.append(PROTOCOL_VERSION).append('\n').append(System.getProperty("java.home")).append('\n');
+    for (Path entry : classpath) {
+      identity.append(entry).append(';');
+      if (Files.isRegularFile(entry)) {
+        identity.append(Files.size(entry)).append(';').append(Files.getLastModifiedTime(entry).toMillis());
+      }
+      identity.append('\n');
+    }
+    final StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest(identity.toString().getBytes(StandardCharsets.UTF_8))) {
+      key.append(String.format("%02x", b));
+    }
+    return key.substring(0, KEY_LENGTH);
+  }
+
+  private static String join(final List<Path> classpath) {
+    final List<String> entries = new ArrayList<>();
+    for (Path entry : classpath) {
+      entries.add(entry.toString());
+    }
+    return String.join(File.pathSeparator, entries);
+  }
+
+  /**
+   * Validates a single file with the daemon
+   *
+   * @param file the file to validate
+   * @return the validation errors of the file, null if the daemon is not available anymore
+   * @throws IOException if the daemon can not read the file
+   */
+  List<ValidationError> validate(final String file, final DocumentType documentType) throws IOException {
+    List<ValidationError> errors = null;
+    byte status = ValidationDaemon.STATUS_OK;
+    if (available.get()) {
+      Connection connection = connections.poll();
+      try {
+        if (connection == null) {
+          connection = new Connection();
+        }
+        connection.out.writeUTF(Paths.get(file).toAbsolutePath().toString());
+        connection.out.writeByte(documentType.ordinal());
+        connection.out.flush();
+        status = connection.in.readByte();
+        errors = ValidationErrorCodec.read(connection.in);
+        connections.offer(connection);
+      } catch (IOException ex) {
+        if (connection != null) {
+          connection.close();
+        }
+        if (available.compareAndSet(true, false)) {
+          log.warn("Validation daemon not available anymore, validating locally (" + ex.getMessage() + ")");
+        }
+      }
+    }
+    if (status == ValidationDaemon.STATUS_FILE_NOT_FOUND) {
+      throw new FileNotFoundException(file);
+    } else if (status == ValidationDaemon.STATUS_READ_ERROR) {
+      throw new IOException("error reading " + file);
+    }
+    return errors;
+  }
+
+  @Override
+  public void close() {
+    Connection connection = connections.poll();
+    while (connection != null) {
+      connection.close();
+      connection = connections.poll();
+    }
+  }
+
+  /**
+   * A connection to the daemon, used by one thread at a time
+   */
+  private final class Connection {
+
+    private final Socket socket;
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    private Connection() throws IOException {
+      this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+      try {
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeUTF(token);
+        out.writeUTF(key);
+        out.writeBoolean(asciiQuotes);
+        out.writeUTF(basedir.getAbsolutePath());
+        out.flush();
+        if (!in.readBoolean()) {
+          throw new IOException("validation daemon rejected connection");
+        }
+      } catch (IOException ex) {
+        socket.close();
+        throw ex;
+      }
+    }
+
+    private void close() {
+      try {
+        socket.close();
+      } catch (IOException ex) {
+        // closing anyway
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Files of a fileset that are no files on disk, like archive entries or
+ * crawled pages. They are neither cached nor validated by the daemon.
+ *
+ * @author Nicolai Ehemann
+ */
+interface DocumentSource extends Closeable {
+
+  /**
+   * @param file the name of the file, as found in the fileset
+   * @return the content of the file
+   * @throws IOException if the file can not be read
+   */
+  ByteBuffer read(String file) throws IOException;
+
+  /**
+   * @param file the name of the file, as found in the fileset
+   * @return the URL of the file, reported by the validator
+   */
+  String getSystemId(String file);
+
+  /**
+   * @param file the name of the file, as found in the fileset
+   * @return the document type declared for the file, null to determine it by the file extension
+   */
+  DocumentType getDocumentType(String file);
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Files of a run by their content, so files with identical content (e.g.
+ * redirect stubs or localized copies) are validated only once. The first
+ * file with a content is validated, the others take over its validation
+ * errors, with the path replaced by their own, once it is validated.
+ *
+ * @author Nicolai Ehemann
+ */
+final class DuplicateContents {
+
+  private final Map<String, Original> originals = new ConcurrentHashMap<>();
+
+  /**
+   * Looks up the first file with the same content and document type,
+   * registering the file as that first file if there is none yet.
+   *
+   * @param file the file to be validated
+   * @param relativePath the path of the file reported with its validation errors
+   * @param content the content of the file, which is not consumed
+   * @return the first file with the content, which may be the file itself
+   */
+  Original claim(final String file, final String relativePath, final DocumentType documentType, final ByteBuffer content) {
+    final String key = documentType + ":" + Base64.getEncoder().encodeToString(ValidationCache.hash(content.duplicate()));
+    final Original original = new Original(file, relativePath);
+    final Original existing = originals.putIfAbsent(key, original);
+    return existing != null ? existing : original;
+  }
+
+  /**
+   * Forgets all files, at the end of a run
+   */
+  void clear() {
+    originals.clear();
+  }
+
+  /**
+   * The first file with a content, and its validation errors once validated
+   */
+  static final class Original {
+
+    private final String file;
+
+    private final String relativePath;
+
+    private final CompletableFuture<List<ValidationError>> errors = new CompletableFuture<>();
+
+    private Original(final String file, final String relativePath) {
+      this.file = file;
+      this.relativePath = relativePath;
+    }
+
+    /**
+     * @return the first file with the content
+     */
+    String getFile() {
+      return file;
+    }
+
+    /**
+     * @return whether the file is this first file, and is to be validated
+     */
+    boolean isFile(final String otherFile) {
+      return file.equals(otherFile);
+    }
+
+    /**
+     * @param validationErrors the validation errors of the file, null if it was not validated completely
+     */
+    void complete(final List<ValidationError> validationErrors) {
+      errors.complete(validationErrors);
+    }
+
+    /**
+     * @param duplicate a file with the same content
+     * @param duplicatePath the path of the file reported with its validation errors
+     * @return the validation errors of the first file as those of the duplicate, once the first file is validated;
+     *         null if the first file was not validated completely
+     */
+    CompletableFuture<List<ValidationError>> getErrors(final String duplicate, final String duplicatePath) {
+      return errors.thenApply(validationErrors -> validationErrors != null ? relabel(validationErrors, duplicate, duplicatePath) : null);
+    }
+
+    private List<ValidationError> relabel(final List<ValidationError> validationErrors, final String duplicate,
+        final String duplicatePath) {
+      final ValidationErrorList duplicateErrors = new ValidationErrorList(validationErrors.size());
+      for (ValidationError error : validationErrors) {
+        String path = error.getPath();
+        if (file.equals(path)) {
+          path = duplicate;
+        } else if (relativePath.equals(path)) {
+          path = duplicatePath;
+        }
+        duplicateErrors.add(error.getType(), path, error.getLine(), error.getColumn(), error.getMessage());
+      }
+      return duplicateErrors;
+    }
+  }
+}
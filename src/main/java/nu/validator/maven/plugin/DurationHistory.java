@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time it took to validate each file in previous runs, used to start the
+ * files taking longest first. Files without a recorded duration are
+ * estimated by their size.
+ *
+ * @author Nicolai Ehemann
+ */
+final class DurationHistory {
+
+  private static final int FORMAT_VERSION = 1;
+
+  private final Path historyFile;
+
+  private final Map<String, Duration> durations = new ConcurrentHashMap<>();
+
+  DurationHistory(final Path historyFile) {
+    this.historyFile = historyFile;
+  }
+
+  /**
+   * Reads the durations recorded by previous runs, if any
+   *
+   * @throws IOException if the history file can not be read
+   */
+  void load() throws IOException {
+    if (Files.isRegularFile(historyFile)) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(historyFile)))) {
+        if (in.readInt() == FORMAT_VERSION) {
+          final int count = in.readInt();
+          for (int i = 0; i < count; i++) {
+            final String file = ValidationErrorCodec.readString(in);
+            final long nanos = in.readLong();
+            durations.put(file, new Duration(nanos, in.readLong()));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the durations of all files (or archives of entries) that still exist
+   *
+   * @throws IOException if the history file can not be written
+   */
+  void save() throws IOException {
+    durations.keySet().removeIf(file -> !Files.exists(Paths.get(file.split(ArchiveFileset.SEPARATOR, 2)[0])));
+    Files.createDirectories(historyFile.getParent());
+    final Path tempFile = Files.createTempFile(historyFile.getParent(), historyFile.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(durations.size());
+        for (Map.Entry<String, Duration> entry : durations.entrySet()) {
+          ValidationErrorCodec.writeString(out, entry.getKey());
+          out.writeLong(entry.getValue().nanos);
+          out.writeLong(entry.getValue().bytes);
+        }
+      }
+      Files.move(tempFile, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * @param file the validated file
+   * @param bytes the size of the file
+   * @param nanos the time it took to validate the file
+   */
+  void record(final String file, final long bytes, final long nanos) {
+    durations.put(file, new Duration(nanos, bytes));
+  }
+
+  /**
+   * Estimates the time it takes to validate a file. Files without recorded
+   * duration are estimated by their size and the average time per byte.
+   *
+   * @param file the file to be validated
+   * @param nanosPerByte the average time per byte, as returned by {@link #getNanosPerByte()}
+   * @return the estimated time, in nanoseconds
+   */
+  double estimate(final String file, final double nanosPerByte) {
+    final Duration duration = durations.get(file);
+    double estimate;
+    if (duration != null) {
+      estimate = duration.nanos;
+    } else {
+      try {
+        estimate = Files.size(Paths.get(file)) * nanosPerByte;
+      } catch (IOException ex) {
+        estimate = 0;
+      }
+    }
+    return estimate;
+  }
+
+  /**
+   * @return the average time per byte over all recorded files, 1 if nothing was recorded
+   */
+  double getNanosPerByte() {
+    long nanos = 0;
+    long bytes = 0;
+    for (Duration duration : durations.values()) {
+      nanos += duration.nanos;
+      bytes += duration.bytes;
+    }
+    return nanos > 0 && bytes > 0 ? (double) nanos / bytes : 1;
+  }
+
+  /**
+   * Recorded validation of a file
+   */
+  private static final class Duration {
+
+    private final long nanos;
+
+    private final long bytes;
+
+    private Duration(final long nanos, final long bytes) {
+      this.nanos = nanos;
+      this.bytes = bytes;
+    }
+  }
+}
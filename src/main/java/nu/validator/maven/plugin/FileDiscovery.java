@@ -0,0 +1,416 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.FileSetCfg;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Finds the files of a fileset. The directory tree is walked in parallel,
+ * following symbolic links. Subtrees that are excluded or can not contain
+ * included files are not entered, and symbolic link loops are skipped.
+ *
+ * @author Nicolai Ehemann
+ */
+class FileDiscovery {
+
+  /**
+   * Files matched when neither a glob nor includes are configured
+   */
+  private static final String DEFAULT_INCLUDE = "**";
+
+  private static final String RECURSIVE_PREFIX = "**/";
+
+  private static final String RECURSIVE_SUFFIX = "/**";
+
+  private final Path directory;
+
+  private final List<IncludePattern> includes = new ArrayList<>();
+
+  private final List<PathMatcher> excludes = new ArrayList<>();
+
+  private final int parallelism;
+
+  private final Log log;
+
+  /**
+   * Whether neither a glob nor includes are configured
+   */
+  private final boolean includingAll;
+
+  private volatile boolean cancelled;
+
+  FileDiscovery(final FileSystem fileSystem, final Path directory, final FileSetCfg fileset, final int parallelism, final Log log) {
+    this.directory = directory;
+    this.parallelism = parallelism;
+    this.log = log;
+    // the glob keeps its plain glob semantics, only includes and excludes are ant patterns
+    final List<String> includePatterns = withTopLevel(fileset.getIncludes());
+    if (fileset.getGlob() != null) {
+      includePatterns.add(fileset.getGlob());
+    }
+    includingAll = includePatterns.isEmpty();
+    if (includingAll) {
+      includePatterns.add(DEFAULT_INCLUDE);
+    }
+    for (String include : includePatterns) {
+      includes.add(new IncludePattern(fileSystem, include));
+    }
+    for (String exclude : withTopLevel(fileset.getExcludes())) {
+      excludes.add(fileSystem.getPathMatcher("glob:" + exclude));
+      if (exclude.endsWith(RECURSIVE_SUFFIX)) {
+        // also exclude the directory itself, so it is not entered
+        excludes.add(fileSystem.getPathMatcher("glob:" + exclude.substring(0, exclude.length() - RECURSIVE_SUFFIX.length())));
+      }
+    }
+  }
+
+  /**
+   * As in ant patterns, a leading "**&#47;" also matches no directory at all.
+   *
+   * @return the patterns, plus those with a leading "**&#47;" without it
+   */
+  private static List<String> withTopLevel(final List<String> patterns) {
+    final List<String> expanded = new ArrayList<>(patterns);
+    for (String pattern : patterns) {
+      if (pattern.startsWith(RECURSIVE_PREFIX)) {
+        expanded.add(pattern.substring(RECURSIVE_PREFIX.length()));
+      }
+    }
+    return expanded;
+  }
+
+  /**
+   * @return the paths of all files of the fileset, sorted
+   * @throws IOException if a directory can not be read
+   */
+  List<String> findSorted() throws IOException {
+    final Queue<String> files = new ConcurrentLinkedQueue<>();
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new DirectoryTask(directory, new Ancestors(null, fileKey(directory)), files::add));
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    } finally {
+      pool.shutdownNow();
+    }
+    return files.stream().sorted().collect(Collectors.toList());
+  }
+
+  /**
+   * Finds the files in the background while they are consumed. Closing the
+   * stream stops the search.
+   *
+   * @return the paths of the files of the fileset, in the order they are found
+   * @throws IOException if the directory can not be read
+   */
+  Stream<String> findLazily() throws IOException {
+    final BlockingQueue<Optional<String>> files = new LinkedBlockingQueue<>();
+    final AtomicReference<UncheckedIOException> failure = new AtomicReference<>();
+    final DirectoryTask search = new DirectoryTask(directory, new Ancestors(null, fileKey(directory)), file -> files.add(Optional.of(file)));
+    final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    pool.execute(() -> {
+      try {
+        search.invoke();
+      } catch (UncheckedIOException ex) {
+        failure.set(ex);
+      } finally {
+        files.add(Optional.empty());
+      }
+    });
+    final Iterator<String> iterator = new Iterator<String>() {
+      private Optional<String> next;
+
+      @Override
+      public boolean hasNext() {
+        if (next == null) {
+          next = take(files);
+        }
+        if (!next.isPresent() && failure.get() != null) {
+          throw failure.get();
+        }
+        return next.isPresent();
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final String file = next.get();
+        next = null;
+        return file;
+      }
+    };
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(() -> {
+          cancelled = true;
+          pool.shutdownNow();
+        });
+  }
+
+  private static Optional<String> take(final BlockingQueue<Optional<String>> files) {
+    try {
+      return files.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @return whether all files are included, as neither a glob nor includes are configured
+   */
+  boolean isIncludingAll() {
+    return includingAll;
+  }
+
+  Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @param subdirectory a directory below the fileset's directory
+   * @return whether the directory is entered to find files
+   */
+  boolean entersDirectory(final Path subdirectory) {
+    final Path relativeDirectory = directory.relativize(subdirectory);
+    boolean entered = !relativeDirectory.startsWith("..");
+    for (int i = 1; entered && i <= relativeDirectory.getNameCount() && !relativeDirectory.toString().isEmpty(); i++) {
+      final Path relativePath = relativeDirectory.subpath(0, i);
+      entered = !isExcluded(relativePath) && mayContainIncluded(relativePath);
+    }
+    return entered;
+  }
+
+  /**
+   * @param file a file below the fileset's directory
+   * @return whether the file is part of the fileset
+   */
+  boolean isPartOfFileset(final Path file) {
+    final Path relativePath = directory.relativize(file);
+    return file.getParent() != null && entersDirectory(file.getParent())
+        && isIncluded(relativePath) && !isExcluded(relativePath);
+  }
+
+  private boolean isExcluded(final Path relativePath) {
+    for (PathMatcher exclude : excludes) {
+      if (exclude.matches(relativePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isIncluded(final Path relativePath) {
+    for (IncludePattern include : includes) {
+      if (include.matches(relativePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean mayContainIncluded(final Path relativeDirectory) {
+    for (IncludePattern include : includes) {
+      if (include.mayMatchBelow(relativeDirectory)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return an identifier of the directory, the same for all paths leading to it
+   */
+  private static Object fileKey(final Path directory) throws IOException {
+    final Object fileKey = Files.readAttributes(directory, BasicFileAttributes.class).fileKey();
+    return fileKey != null ? fileKey : directory.toRealPath();
+  }
+
+  /**
+   * Walks a directory, forking a task for each subdirectory to be entered.
+   */
+  private class DirectoryTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Path taskDirectory;
+
+    private final Ancestors ancestors;
+
+    private final Consumer<String> files;
+
+    DirectoryTask(final Path taskDirectory, final Ancestors ancestors, final Consumer<String> files) {
+      this.taskDirectory = taskDirectory;
+      this.ancestors = ancestors;
+      this.files = files;
+    }
+
+    @Override
+    protected void compute() {
+      if (cancelled) {
+        return;
+      }
+      final List<DirectoryTask> subdirectories = new ArrayList<>();
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(taskDirectory)) {
+        for (Path entry : entries) {
+          final DirectoryTask subdirectory = visit(entry);
+          if (subdirectory != null) {
+            subdirectories.add(subdirectory);
+          }
+        }
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      invokeAll(subdirectories);
+    }
+
+    /**
+     * @return the task to walk the entry, if it is a directory to be entered
+     */
+    private DirectoryTask visit(final Path entry) throws IOException {
+      final BasicFileAttributes attributes;
+      try {
+        attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+      } catch (NoSuchFileException ex) {
+        // broken symbolic link
+        return null;
+      }
+      final Path relativePath = directory.relativize(entry);
+      DirectoryTask subdirectory = null;
+      if (attributes.isDirectory()) {
+        if (!isExcluded(relativePath) && mayContainIncluded(relativePath)) {
+          final Object fileKey = attributes.fileKey() != null ? attributes.fileKey() : entry.toRealPath();
+          if (ancestors.contains(fileKey)) {
+            log.warn("Skipping directory " + entry + ", symbolic link loop detected");
+          } else {
+            subdirectory = new DirectoryTask(entry, new Ancestors(ancestors, fileKey), files);
+          }
+        }
+      } else if (attributes.isRegularFile() && isIncluded(relativePath) && !isExcluded(relativePath)) {
+        files.accept(entry.toString());
+      }
+      return subdirectory;
+    }
+  }
+
+  /**
+   * The directories on the way to a directory, to detect symbolic link loops
+   */
+  private static final class Ancestors {
+
+    private final Ancestors parent;
+
+    private final Object fileKey;
+
+    private Ancestors(final Ancestors parent, final Object fileKey) {
+      this.parent = parent;
+      this.fileKey = fileKey;
+    }
+
+    private boolean contains(final Object key) {
+      Ancestors ancestor = this;
+      while (ancestor != null && !ancestor.fileKey.equals(key)) {
+        ancestor = ancestor.parent;
+      }
+      return ancestor != null;
+    }
+  }
+
+  /**
+   * An include glob, along with matchers for its leading path segments to
+   * decide whether a directory may contain matching files.
+   */
+  private static final class IncludePattern {
+
+    private final PathMatcher matcher;
+
+    /**
+     * Matchers for the segments up to the first segment matching any number of directories
+     */
+    private final List<PathMatcher> segments = new ArrayList<>();
+
+    /**
+     * Whether the pattern matches files in any depth below its leading segments
+     */
+    private final boolean recursive;
+
+    private IncludePattern(final FileSystem fileSystem, final String pattern) {
+      this.matcher = fileSystem.getPathMatcher("glob:" + pattern);
+      // groups and bracket expressions may span segments, don't try to split those
+      boolean anyDepth = pattern.indexOf('{') >= 0 || pattern.indexOf('[') >= 0;
+      if (!anyDepth) {
+        for (String segment : pattern.split("/")) {
+          if (segment.contains("**")) {
+            anyDepth = true;
+            break;
+          }
+          segments.add(fileSystem.getPathMatcher("glob:" + segment));
+        }
+      }
+      this.recursive = anyDepth;
+    }
+
+    private boolean matches(final Path relativePath) {
+      return matcher.matches(relativePath);
+    }
+
+    private boolean mayMatchBelow(final Path relativeDirectory) {
+      final int depth = relativeDirectory.getNameCount();
+      boolean mayMatch = recursive || depth < segments.size();
+      for (int i = 0; mayMatch && i < Math.min(depth, segments.size()); i++) {
+        mayMatch = segments.get(i).matches(relativeDirectory.getName(i));
+      }
+      return mayMatch;
+    }
+  }
+}
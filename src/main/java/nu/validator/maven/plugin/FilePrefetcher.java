@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Reads the contents of files ahead of their validation, so validation
+ * threads parse files already in memory instead of waiting for the disk.
+ * Files of up to {@link #MAP_THRESHOLD} bytes are read into the heap, larger
+ * files are memory mapped.
+ *
+ * Only the files waiting for validation are read ahead, so the memory used
+ * is limited by the number of pending files.
+ *
+ * @author Nicolai Ehemann
+ */
+final class FilePrefetcher implements Closeable {
+
+  /**
+   * Size from which files are memory mapped instead of read
+   */
+  static final long MAP_THRESHOLD = 1024 * 1024;
+
+  private final ExecutorService executor;
+
+  /**
+   * Decides whether the content of a file will be needed
+   */
+  private final Predicate<Path> needed;
+
+  /**
+   * @param threads number of files read in parallel
+   * @param needed decides whether the content of a file will be needed, files
+   *     not needed (e.g. because their results are cached) are not read
+   */
+  FilePrefetcher(final int threads, final Predicate<Path> needed) {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread = new Thread(runnable, "vnu-prefetch-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.needed = needed;
+  }
+
+  /**
+   * Starts reading an archive entry or crawled page in the background
+   *
+   * @return the content of the entry or page
+   */
+  Future<ByteBuffer> prefetch(final DocumentSource source, final String file) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return source.read(file);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }, executor);
+  }
+
+  /**
+   * Starts reading a file in the background
+   *
+   * @return the content of the file, null if it is not needed
+   */
+  Future<ByteBuffer> prefetch(final Path file) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return needed.test(file) ? read(file) : null;
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }, executor);
+  }
+
+  /**
+   * Waits for the content of a file read ahead
+   *
+   * @return the content of the file, null if it was not needed
+   * @throws IOException if the file could not be read
+   */
+  static ByteBuffer get(final Future<ByteBuffer> content) throws IOException {
+    try {
+      return content.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading file");
+    } catch (ExecutionException ex) {
+      throw ex.getCause() instanceof UncheckedIOException
+          ? ((UncheckedIOException) ex.getCause()).getCause()
+          : new IOException(ex.getCause());
+    }
+  }
+
+  /**
+   * Reads the content of a file, memory mapping it if it is large
+   *
+   * @return the content of the file
+   * @throws IOException if the file can not be read
+   */
+  static ByteBuffer read(final Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final long size = channel.size();
+      final ByteBuffer content;
+      if (size > MAP_THRESHOLD) {
+        content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        content = readFully(channel, (int) size);
+      }
+      return content;
+    } catch (NoSuchFileException ex) {
+      throw new FileNotFoundException(file.toString());
+    }
+  }
+
+  /**
+   * Reads a channel up to its end, also if it holds more than expected
+   *
+   * @param size the expected size of the content
+   */
+  static ByteBuffer readFully(final ReadableByteChannel channel, final int size) throws IOException {
+    ByteBuffer content = ByteBuffer.allocate(size + 1);
+    while (channel.read(content) >= 0) {
+      if (!content.hasRemaining()) {
+        final ByteBuffer larger = ByteBuffer.allocate(content.capacity() * 2);
+        content.flip();
+        larger.put(content);
+        content = larger;
+      }
+    }
+    content.flip();
+    return content;
+  }
+
+  /**
+   * Stops reading files ahead
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
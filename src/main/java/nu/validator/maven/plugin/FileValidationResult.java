@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.util.List;
+
+/**
+ * The messages to be reported for a validated file, i.e. its validation
+ * errors without filtered and ignored ones.
+ *
+ * @author Nicolai Ehemann
+ */
+class FileValidationResult {
+
+  /**
+   * Path of the validated file
+   */
+  private final String file;
+
+  /**
+   * Messages to be reported, in the order they were found
+   */
+  private final List<ValidationError> messages;
+
+  /**
+   * Whether warnings are reported as errors
+   */
+  private final boolean warningsAsErrors;
+
+  private final int warnings;
+
+  private final int errors;
+
+  FileValidationResult(final String file, final List<ValidationError> messages, final boolean warningsAsErrors) {
+    this.file = file;
+    this.messages = messages;
+    this.warningsAsErrors = warningsAsErrors;
+    int errorCount = 0;
+    for (ValidationError message : messages) {
+      if (isError(message)) {
+        errorCount++;
+      }
+    }
+    this.errors = errorCount;
+    this.warnings = messages.size() - errorCount;
+  }
+
+  String getFile() {
+    return file;
+  }
+
+  List<ValidationError> getMessages() {
+    return messages;
+  }
+
+  /**
+   * @param message one of the messages of this result
+   * @return whether the message is reported as error (or as warning otherwise)
+   */
+  boolean isError(final ValidationError message) {
+    return warningsAsErrors || message.getType() != ValidationError.Type.WARNING;
+  }
+
+  boolean isWarningsAsErrors() {
+    return warningsAsErrors;
+  }
+
+  int getWarnings() {
+    return warnings;
+  }
+
+  int getErrors() {
+    return errors;
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.FileSetCfg;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Watches the directories of filesets for created and modified files. The
+ * WatchService only watches single directories, so every directory entered
+ * to find the files of a fileset is registered, including directories
+ * created later on.
+ *
+ * @author Nicolai Ehemann
+ */
+class FilesetWatcher implements Closeable {
+
+  /**
+   * Time to wait for further changes after a change, as editors tend to write a file in several steps
+   */
+  private static final long SETTLE_MILLIS = 50;
+
+  private final WatchService watchService;
+
+  /**
+   * The filesets to watch, in configuration order
+   */
+  private final Map<FileSetCfg, FileDiscovery> filesets;
+
+  private final Map<WatchKey, Path> directories = new HashMap<>();
+
+  private final Log log;
+
+  FilesetWatcher(final FileSystem fileSystem, final Map<FileSetCfg, FileDiscovery> filesets, final Log log) throws IOException {
+    this.watchService = fileSystem.newWatchService();
+    this.filesets = filesets;
+    this.log = log;
+    for (FileDiscovery discovery : filesets.values()) {
+      register(discovery.getDirectory(), file -> { });
+    }
+  }
+
+  /**
+   * Waits for files of the filesets to be created or modified.
+   *
+   * @return the changed files, grouped by the first fileset they are part of
+   * @throws InterruptedException if interrupted while waiting
+   * @throws IOException if a new directory can not be watched
+   */
+  Map<FileSetCfg, List<String>> take() throws InterruptedException, IOException {
+    final Map<FileSetCfg, List<String>> changedFiles = new LinkedHashMap<>();
+    while (changedFiles.isEmpty()) {
+      final Set<Path> changedPaths = new LinkedHashSet<>();
+      WatchKey key = watchService.take();
+      while (key != null) {
+        poll(key, changedPaths);
+        key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      for (Path path : changedPaths) {
+        assign(path, changedFiles);
+      }
+    }
+    return changedFiles;
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void poll(final WatchKey key, final Set<Path> changedPaths) throws IOException {
+    final Path directory = directories.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        log.warn("Too many changes in " + directory + ", some changes may not be validated");
+      } else if (directory != null) {
+        final Path path = directory.resolve((Path) event.context());
+        if (Files.isDirectory(path)) {
+          if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+            // files may have been created before the directory is watched
+            register(path, changedPaths::add);
+          }
+        } else {
+          changedPaths.add(path);
+        }
+      }
+    }
+    if (!key.reset()) {
+      directories.remove(key);
+    }
+  }
+
+  /**
+   * Adds a file to the first fileset it is part of, if any
+   */
+  private void assign(final Path file, final Map<FileSetCfg, List<String>> changedFiles) {
+    if (Files.isRegularFile(file)) {
+      for (Map.Entry<FileSetCfg, FileDiscovery> fileset : filesets.entrySet()) {
+        if (fileset.getValue().isPartOfFileset(file)) {
+          changedFiles.computeIfAbsent(fileset.getKey(), key -> new ArrayList<>()).add(file.toString());
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Watches a directory and all directories below that are entered to find files of a fileset
+   *
+   * @param files receives the files found in the directories
+   */
+  private void register(final Path directory, final Consumer<Path> files) throws IOException {
+    Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes) throws IOException {
+        FileVisitResult result = FileVisitResult.SKIP_SUBTREE;
+        if (isEntered(dir)) {
+          final WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+          directories.put(key, dir);
+          result = FileVisitResult.CONTINUE;
+        }
+        return result;
+      }
+
+      @Override
+      public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+        files.accept(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(final Path file, final IOException ex) {
+        // symbolic link loops and files vanished in the meantime
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private boolean isEntered(final Path directory) {
+    boolean entered = false;
+    for (FileDiscovery discovery : filesets.values()) {
+      entered = entered || discovery.entersDirectory(directory);
+    }
+    return entered;
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Validates documents held in memory, e.g. templates rendered by tests,
+ * without writing them to disk. Validators are set up once and reused, and
+ * may be used by several threads at once. Documents are checked in parallel,
+ * except that SVG and XHTML documents wait for HTML and CSS documents being
+ * checked and vice versa, as v.Nu reads a JVM wide setting differing for
+ * them. Messages name the document by the name passed along with it.
+ *
+ * Example:
+ * <pre>
+ * try (InMemoryValidator validator = new InMemoryValidator()) {
+ *   validator.assertValid("index.html", renderedPage, DocumentType.HTML);
+ * }
+ * </pre>
+ *
+ * @author Nicolai Ehemann
+ */
+public final class InMemoryValidator implements AutoCloseable {
+
+  /**
+   * Initial buffer size for streams of unknown size
+   */
+  private static final int UNKNOWN_SIZE = 8192;
+
+  /**
+   * Workers not in use, each used by one thread at a time
+   */
+  private final Queue<ValidationWorker> workers = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Directory document names are resolved against, nothing is read from it
+   */
+  private final File basedir = new File("").getAbsoluteFile();
+
+  private final boolean asciiQuotes;
+
+  /**
+   * Creates a validator reporting messages with ASCII quotes, as the plugin does by default
+   */
+  public InMemoryValidator() {
+    this(true);
+  }
+
+  /**
+   * @param asciiQuotes whether to replace unicode quotes in messages by ASCII quotes
+   */
+  public InMemoryValidator(final boolean asciiQuotes) {
+    this.asciiQuotes = asciiQuotes;
+  }
+
+  /**
+   * @param name the name of the document, e.g. {@code templates/index.html}, reported with the messages
+   * @param content the document, validated as UTF-8
+   * @return the validation errors and warnings of the document
+   * @throws IllegalStateException if no validator can be set up for the document type
+   */
+  public List<ValidationError> validate(final String name, final String content, final DocumentType documentType) {
+    return validate(name, ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)), documentType);
+  }
+
+  /**
+   * @param name the name of the document, e.g. {@code templates/index.html}, reported with the messages
+   * @param content the document, HTML and CSS are read as UTF-8
+   * @return the validation errors and warnings of the document
+   * @throws IllegalStateException if no validator can be set up for the document type
+   */
+  public List<ValidationError> validate(final String name, final byte[] content, final DocumentType documentType) {
+    return validate(name, ByteBuffer.wrap(content), documentType);
+  }
+
+  /**
+   * @param name the name of the document, e.g. {@code templates/index.html}, reported with the messages
+   * @param content the document, read up to its end but not closed, HTML and CSS are read as UTF-8
+   * @return the validation errors and warnings of the document
+   * @throws IllegalStateException if no validator can be set up for the document type
+   * @throws IOException if the stream can not be read
+   */
+  public List<ValidationError> validate(final String name, final InputStream content, final DocumentType documentType)
+      throws IOException {
+    return validate(name, FilePrefetcher.readFully(Channels.newChannel(content), UNKNOWN_SIZE), documentType);
+  }
+
+  private List<ValidationError> validate(final String name, final ByteBuffer content, final DocumentType documentType) {
+    ValidationWorker worker = workers.poll();
+    if (worker == null) {
+      worker = new ValidationWorker(asciiQuotes, basedir, () -> false);
+    }
+    try {
+      return worker.validate(name, new File(basedir, name).toURI().toString(), content, documentType);
+    } catch (IOException ex) {
+      // the content is in memory already, so this is a failure to parse it
+      return singleError(name, ex.getMessage());
+    } finally {
+      workers.offer(worker);
+    }
+  }
+
+  /**
+   * Checks that a document has no errors, warnings are allowed. The
+   * {@link AssertionError} is reported as test failure by JUnit and other
+   * test frameworks.
+   *
+   * @param name the name of the document, e.g. {@code templates/index.html}, reported with the messages
+   * @param content the document, validated as UTF-8
+   * @throws AssertionError listing the errors, if there are any
+   */
+  public void assertValid(final String name, final String content, final DocumentType documentType) {
+    assertNoErrors(name, validate(name, content, documentType));
+  }
+
+  /**
+   * Checks that a document has no errors, warnings are allowed.
+   *
+   * @param name the name of the document, e.g. {@code templates/index.html}, reported with the messages
+   * @param content the document, HTML and CSS are read as UTF-8
+   * @throws AssertionError listing the errors, if there are any
+   */
+  public void assertValid(final String name, final byte[] content, final DocumentType documentType) {
+    assertNoErrors(name, validate(name, content, documentType));
+  }
+
+  private static List<ValidationError> singleError(final String name, final String message) {
+    final ValidationErrorList errors = new ValidationErrorList(1);
+    errors.add(ValidationError.Type.FATAL, name, -1, -1, message);
+    return errors;
+  }
+
+  private static void assertNoErrors(final String name, final List<ValidationError> validationErrors) {
+    final StringBuilder message = new StringBuilder();
+    int errors = 0;
+    for (ValidationError error : validationErrors) {
+      if (error.getType() != ValidationError.Type.WARNING) {
+        message.append(System.lineSeparator()).append(error);
+        errors++;
+      }
+    }
+    if (errors > 0) {
+      throw new AssertionError(String.format("%s has %d errors:%s", name, errors, message));
+    }
+  }
+
+  /**
+   * Returns the validators to the JVM wide pool. Validators in use by other
+   * threads at the time are returned to this validator, which may still be
+   * used afterwards.
+   */
+  @Override
+  public void close() {
+    ValidationWorker worker = workers.poll();
+    while (worker != null) {
+      worker.release();
+      worker = workers.poll();
+    }
+  }
+}
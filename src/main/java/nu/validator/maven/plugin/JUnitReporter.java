@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a JUnit XML report with a test case per file, failed if the file
+ * has errors. As the test suite states its counts up front, the test cases
+ * are streamed to a temporary file first, which is copied into the report
+ * when the reporter is closed.
+ *
+ * @author Nicolai Ehemann
+ */
+class JUnitReporter implements ValidationReporter {
+
+  private static final String SUITE_NAME = "vnu";
+
+  private final Path reportFile;
+
+  private final Path testCaseFile;
+
+  private final Path basedir;
+
+  private final Writer testCaseWriter;
+
+  private final XMLStreamWriter xml;
+
+  private int tests;
+
+  private int failures;
+
+  /**
+   * @param reportFile the file to write, replaced if it exists
+   * @param basedir the project's base directory, to name test cases by relative path
+   * @throws IOException if the file can not be created
+   */
+  JUnitReporter(final Path reportFile, final Path basedir) throws IOException {
+    Files.createDirectories(reportFile.getParent());
+    this.reportFile = reportFile;
+    this.basedir = basedir;
+    this.testCaseFile = Files.createTempFile(reportFile.getParent(), reportFile.getFileName().toString(), ".tmp");
+    this.testCaseWriter = Files.newBufferedWriter(testCaseFile, StandardCharsets.UTF_8);
+    try {
+      this.xml = XMLOutputFactory.newInstance().createXMLStreamWriter(testCaseWriter);
+    } catch (XMLStreamException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    }
+  }
+
+  @Override
+  public void report(final FileValidationResult result) {
+    try {
+      xml.writeStartElement("testcase");
+      xml.writeAttribute("classname", SUITE_NAME);
+      xml.writeAttribute("name", toName(result.getFile()));
+      if (result.getErrors() > 0) {
+        xml.writeStartElement("failure");
+        xml.writeAttribute("message", String.format("%d errors, %d warnings", result.getErrors(), result.getWarnings()));
+        xml.writeAttribute("type", "validation");
+        xml.writeCharacters(toText(result));
+        xml.writeEndElement();
+        failures++;
+      } else if (result.getWarnings() > 0) {
+        xml.writeStartElement("system-out");
+        xml.writeCharacters(toText(result));
+        xml.writeEndElement();
+      }
+      xml.writeEndElement();
+      xml.writeCharacters("\n");
+      tests++;
+    } catch (XMLStreamException ex) {
+      throw new UncheckedIOException(new IOException(ex.getMessage(), ex));
+    }
+  }
+
+  /**
+   * @return the path of the file relative to the base directory, pages keep their URL
+   */
+  private String toName(final String file) {
+    return PageCrawler.isPage(file) ? file : basedir.relativize(basedir.resolve(file)).toString();
+  }
+
+  private static String toText(final FileValidationResult result) {
+    final StringBuilder text = new StringBuilder();
+    for (ValidationError message : result.getMessages()) {
+      text.append(message).append('\n');
+    }
+    return text.toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      xml.close();
+      testCaseWriter.close();
+      writeReport();
+    } catch (XMLStreamException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    } finally {
+      Files.deleteIfExists(testCaseFile);
+    }
+  }
+
+  /**
+   * Writes the test suite with the streamed test cases
+   */
+  private void writeReport() throws IOException {
+    final Path tempFile = Files.createTempFile(reportFile.getParent(), reportFile.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(tempFile)) {
+        out.write(String.format("<?xml version=\"1.0\" encoding=\"UTF-8\"?>%n"
+            + "<testsuites tests=\"%d\" failures=\"%d\">%n"
+            + "<testsuite name=\"%s\" tests=\"%d\" failures=\"%d\" errors=\"0\" skipped=\"0\">%n",
+            tests, failures, SUITE_NAME, tests, failures).getBytes(StandardCharsets.UTF_8));
+        Files.copy(testCaseFile, out);
+        out.write(String.format("</testsuite>%n</testsuites>%n").getBytes(StandardCharsets.UTF_8));
+      }
+      Files.move(tempFile, reportFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes one JSON object per message and line, as soon as a file is validated.
+ *
+ * @author Nicolai Ehemann
+ */
+class JsonLinesReporter implements ValidationReporter {
+
+  private final JsonWriter json;
+
+  /**
+   * @param reportFile the file to write, replaced if it exists
+   * @throws IOException if the file can not be created
+   */
+  JsonLinesReporter(final Path reportFile) throws IOException {
+    Files.createDirectories(reportFile.getParent());
+    this.json = new JsonWriter(Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public void report(final FileValidationResult result) {
+    try {
+      for (ValidationError message : result.getMessages()) {
+        json.beginObject()
+            .name("file").value(message.getPath())
+            .name("line").value(message.getLine())
+            .name("column").value(message.getColumn())
+            .name("type").value(message.getType().name())
+            .name("severity").value(result.isError(message) ? "error" : "warning")
+            .name("message").value(message.getMessage())
+            .endObject()
+            .newLine();
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    json.close();
+  }
+}
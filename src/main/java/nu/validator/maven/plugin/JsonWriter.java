@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writes JSON directly to a writer, without building a document in memory.
+ * Commas between members and array elements are inserted automatically.
+ *
+ * @author Nicolai Ehemann
+ */
+final class JsonWriter implements Closeable {
+
+  private static final char LAST_CONTROL_CHARACTER = 0x1f;
+
+  /**
+   * Valid in JSON strings, but not in javascript
+   */
+  private static final char LINE_SEPARATOR = 0x2028;
+
+  private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+  private final Writer writer;
+
+  /**
+   * For each open object or array, whether it has no members or elements yet
+   */
+  private final Deque<Boolean> empty = new ArrayDeque<>();
+
+  /**
+   * Whether a member name was just written, so the value needs no comma
+   */
+  private boolean afterName;
+
+  JsonWriter(final Writer writer) {
+    this.writer = writer;
+  }
+
+  JsonWriter beginObject() throws IOException {
+    beforeValue();
+    writer.write('{');
+    empty.push(true);
+    return this;
+  }
+
+  JsonWriter endObject() throws IOException {
+    empty.pop();
+    writer.write('}');
+    return this;
+  }
+
+  JsonWriter beginArray() throws IOException {
+    beforeValue();
+    writer.write('[');
+    empty.push(true);
+    return this;
+  }
+
+  JsonWriter endArray() throws IOException {
+    empty.pop();
+    writer.write(']');
+    return this;
+  }
+
+  JsonWriter name(final String name) throws IOException {
+    beforeValue();
+    writeString(name);
+    writer.write(':');
+    afterName = true;
+    return this;
+  }
+
+  JsonWriter value(final String value) throws IOException {
+    beforeValue();
+    if (value == null) {
+      writer.write("null");
+    } else {
+      writeString(value);
+    }
+    return this;
+  }
+
+  JsonWriter value(final long value) throws IOException {
+    beforeValue();
+    writer.write(Long.toString(value));
+    return this;
+  }
+
+  JsonWriter value(final double value) throws IOException {
+    beforeValue();
+    writer.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+    return this;
+  }
+
+  JsonWriter value(final boolean value) throws IOException {
+    beforeValue();
+    writer.write(Boolean.toString(value));
+    return this;
+  }
+
+  /**
+   * Ends the current line, for formats with one JSON document per line
+   */
+  JsonWriter newLine() throws IOException {
+    writer.write('\n');
+    return this;
+  }
+
+  void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  private void beforeValue() throws IOException {
+    if (afterName) {
+      afterName = false;
+    } else if (!empty.isEmpty()) {
+      if (!empty.peek()) {
+        writer.write(',');
+      }
+      empty.pop();
+      empty.push(false);
+    }
+  }
+
+  private void writeString(final String string) throws IOException {
+    writer.write('"');
+    for (int i = 0; i < string.length(); i++) {
+      final char c = string.charAt(i);
+      switch (c) {
+        case '"':
+          writer.write("\\\"");
+          break;
+        case '\\':
+          writer.write("\\\\");
+          break;
+        case '\n':
+          writer.write("\\n");
+          break;
+        case '\r':
+          writer.write("\\r");
+          break;
+        case '\t':
+          writer.write("\\t");
+          break;
+        default:
+          if (c <= LAST_CONTROL_CHARACTER || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+            writer.write(String.format("\\u%04x", (int) c));
+          } else {
+            writer.write(c);
+          }
+      }
+    }
+    writer.write('"');
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.FilterCfg;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The configured filters, compiled for matching many messages. Each filter is
+ * checked for a literal part of its regex before the regex is run, filters
+ * consisting of a literal only are matched without regex. Filters without a
+ * literal part are combined into one regex per message type. As the same
+ * messages tend to occur over and over again, decisions are memorised per
+ * message type and message.
+ *
+ * @author Nicolai Ehemann
+ */
+class MessageFilter {
+
+  /**
+   * Maximum number of decisions memorised per message type
+   */
+  private static final int MAX_MEMORISED = 65536;
+
+  /**
+   * Regexes that can not be combined: back references depend on the group
+   * numbering, named groups must be unique in the combined regex, and
+   * comments or an unterminated quote would swallow the end of the combined
+   * group.
+   */
+  private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\([1-9]|k<|Q)|\\(\\?<[a-zA-Z]|\\(\\?[a-zA-Z-]*x");
+
+  private final Map<ValidationError.Type, List<CompiledFilter>> filters = new EnumMap<>(ValidationError.Type.class);
+
+  private final Map<ValidationError.Type, Map<String, Boolean>> decisions = new EnumMap<>(ValidationError.Type.class);
+
+  MessageFilter(final List<FilterCfg> filterCfgs) {
+    for (ValidationError.Type type : ValidationError.Type.values()) {
+      final List<CompiledFilter> compiled = new ArrayList<>();
+      final List<String> combinable = new ArrayList<>();
+      for (FilterCfg filter : filterCfgs) {
+        if (filter.getType() == FilterCfg.FilterType.ALL || filter.getType().getErrorType() == type) {
+          final LiteralPart literalPart = getLiteralPart(filter.getRegex());
+          if (literalPart.getLiteral().isEmpty() && !literalPart.isOnlyLiteral()
+              && !NOT_COMBINABLE.matcher(filter.getRegex()).find()) {
+            combinable.add(filter.getRegex());
+          } else {
+            compiled.add(new CompiledFilter(literalPart.getLiteral(), literalPart.isOnlyLiteral() ? null : filter.getPattern()));
+          }
+        }
+      }
+      if (!combinable.isEmpty()) {
+        compiled.add(new CompiledFilter("", Pattern.compile("(?:" + String.join(")|(?:", combinable) + ")")));
+      }
+      filters.put(type, compiled);
+      decisions.put(type, new ConcurrentHashMap<>());
+    }
+  }
+
+  /**
+   * @param error a validation error
+   * @return whether the error is filtered by any of the filters
+   */
+  boolean isFiltered(final ValidationError error) {
+    final String message = String.valueOf(error.getMessage());
+    final Map<String, Boolean> memorised = decisions.get(error.getType());
+    Boolean filtered = memorised.get(message);
+    if (filtered == null) {
+      filtered = matchesAny(filters.get(error.getType()), message);
+      if (memorised.size() < MAX_MEMORISED) {
+        memorised.put(message, filtered);
+      }
+    }
+    return filtered;
+  }
+
+  private static boolean matchesAny(final List<CompiledFilter> compiledFilters, final String message) {
+    for (CompiledFilter filter : compiledFilters) {
+      if (filter.matches(message)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param regex a regular expression
+   * @return a literal every match of the regex contains (empty if there is none), and
+   *         whether the regex consists of that literal only
+   */
+  static LiteralPart getLiteralPart(final String regex) {
+    // alternatives and inline flags could make any literal optional or case insensitive, quoting hides brackets
+    if (regex.indexOf('|') >= 0 || regex.contains("(?") || regex.contains("\\Q")) {
+      return new LiteralPart("", false);
+    }
+    String longest = "";
+    final StringBuilder run = new StringBuilder();
+    boolean onlyLiteral = true;
+    int depth = 0;
+    int i = 0;
+    while (i < regex.length()) {
+      final char c = regex.charAt(i);
+      int next = i + 1;
+      boolean literal = false;
+      char literalChar = c;
+      if (c == '\\' && next < regex.length()) {
+        literalChar = regex.charAt(next);
+        literal = depth == 0 && !Character.isLetterOrDigit(literalChar);
+        // escapes like \x41, \u201C, \0101, \cJ or \p{L} span more characters, none of the rest is known literal
+        next = Character.isLetterOrDigit(literalChar) ? regex.length() : next + 1;
+      } else if (c == '[') {
+        next = skipCharacterClass(regex, i);
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (isQuantifier(c)) {
+        next = skipQuantifier(regex, i);
+      } else {
+        literal = depth == 0 && ".^$".indexOf(c) < 0;
+      }
+      // a quantified character may be missing, except for at least once (+)
+      final boolean quantified = next < regex.length() && isQuantifier(regex.charAt(next));
+      if (literal && (!quantified || regex.charAt(next) == '+')) {
+        run.append(literalChar);
+      }
+      if (!literal || quantified) {
+        onlyLiteral = false;
+        if (run.length() > longest.length()) {
+          longest = run.toString();
+        }
+        run.setLength(0);
+      }
+      i = next;
+    }
+    if (run.length() > longest.length()) {
+      longest = run.toString();
+    }
+    return new LiteralPart(longest, onlyLiteral && depth == 0);
+  }
+
+  private static boolean isQuantifier(final char c) {
+    return c == '?' || c == '*' || c == '+' || c == '{';
+  }
+
+  private static int skipQuantifier(final String regex, final int start) {
+    int i = start;
+    if (regex.charAt(i) == '{') {
+      while (i < regex.length() && regex.charAt(i) != '}') {
+        i++;
+      }
+    }
+    i++;
+    // lazy or possessive quantifier
+    if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipCharacterClass(final String regex, final int start) {
+    int depth = 0;
+    int literalBracket = -1;
+    int i = start;
+    while (i < regex.length()) {
+      final char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '[') {
+        depth++;
+        // a closing bracket right at the start of a class is a literal
+        literalBracket = i + 1 < regex.length() && regex.charAt(i + 1) == '^' ? i + 2 : i + 1;
+      } else if (c == ']' && i != literalBracket) {
+        depth--;
+        if (depth == 0) {
+          return i + 1;
+        }
+      }
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * A literal part of a regex.
+   */
+  static final class LiteralPart {
+
+    private final String literal;
+
+    private final boolean onlyLiteral;
+
+    private LiteralPart(final String literal, final boolean onlyLiteral) {
+      this.literal = literal;
+      this.onlyLiteral = onlyLiteral;
+    }
+
+    String getLiteral() {
+      return literal;
+    }
+
+    boolean isOnlyLiteral() {
+      return onlyLiteral;
+    }
+  }
+
+  /**
+   * A filter regex along with its literal part.
+   */
+  private static final class CompiledFilter {
+
+    private final String literal;
+
+    private final Pattern pattern;
+
+    /**
+     * @param literal a literal every match contains
+     * @param pattern the regex to match, null if the literal is the whole regex
+     */
+    private CompiledFilter(final String literal, final Pattern pattern) {
+      this.literal = literal;
+      this.pattern = pattern;
+    }
+
+    private boolean matches(final String message) {
+      return message.contains(literal) && (pattern == null || pattern.matcher(message).find());
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of validation messages, shared by all validation
+ * errors of the JVM. Most messages occur over and over again, so keeping a
+ * single instance of each saves memory, and converting quotes is only done
+ * once per distinct message.
+ *
+ * @author Nicolai Ehemann
+ */
+final class MessageTable {
+
+  /**
+   * Maximum number of distinct messages kept. Further messages are still
+   * converted, but not shared.
+   */
+  private static final int MAX_MESSAGES = 65536;
+
+  private static final Map<String, String> MESSAGES = new ConcurrentHashMap<>();
+
+  /**
+   * Canonical messages with ASCII quotes, by the message as reported by v.Nu
+   */
+  private static final Map<String, String> ASCII_MESSAGES = new ConcurrentHashMap<>();
+
+  private MessageTable() {
+  }
+
+  /**
+   * @return the canonical instance of the message
+   */
+  static String intern(final String message) {
+    String canonical = MESSAGES.get(message);
+    if (canonical == null) {
+      canonical = message;
+      if (MESSAGES.size() < MAX_MESSAGES) {
+        final String previous = MESSAGES.putIfAbsent(message, message);
+        canonical = previous != null ? previous : message;
+      }
+    }
+    return canonical;
+  }
+
+  /**
+   * @param message a message as reported by v.Nu
+   * @return the canonical instance of the message, with unicode quotes replaced by ASCII quotes
+   */
+  static String internAscii(final String message) {
+    String canonical = ASCII_MESSAGES.get(message);
+    if (canonical == null) {
+      canonical = intern(message.replace('“', '"').replace('”', '"'));
+      if (ASCII_MESSAGES.size() < MAX_MESSAGES) {
+        ASCII_MESSAGES.putIfAbsent(message, canonical);
+      }
+    }
+    return canonical;
+  }
+}
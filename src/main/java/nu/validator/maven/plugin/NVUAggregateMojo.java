@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.FileSetCfg;
+import nu.validator.maven.plugin.configuration.MojoInvalidConfigurationException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Validates the HTML / CSS / SVG files of all modules of the reactor at once.
+ * The filesets configured for the plugin in the modules are validated in a
+ * single run, with one pool of threads and validators, and one summary. All
+ * other settings are taken from the configuration of this goal.
+ */
+@Mojo(name = "aggregate", aggregator = true, threadSafe = true)
+public class NVUAggregateMojo extends AbstractNVUValidatorMojo {
+
+  /**
+   * The projects of the reactor
+   */
+  @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+  private List<MavenProject> reactorProjects;
+
+  /**
+   * This plugin, to find its configuration in the projects
+   */
+  @Parameter(defaultValue = "${plugin}", readonly = true, required = true)
+  private PluginDescriptor plugin;
+
+  NVUAggregateMojo(final FileSystem fileSystem) {
+    super(fileSystem);
+  }
+
+  public NVUAggregateMojo() {
+    super();
+  }
+
+  @Override
+  public final void execute() throws MojoFailureException {
+    final NVUValidator nvuValidator = createValidator();
+    nvuValidator.validate();
+  }
+
+  /**
+   * Replaces the filesets by those of all reactor projects
+   */
+  @Override
+  final void configure(final NVUValidatorConfiguration configuration) throws MojoFailureException {
+    final Map<String, FileSetCfg> filesets = new LinkedHashMap<>();
+    for (MavenProject project : reactorProjects) {
+      for (Xpp3Dom fileset : findFilesets(project)) {
+        addFileset(filesets, project, fileset);
+      }
+    }
+    getLog().info(String.format("Validating %d filesets of %d projects", filesets.size(), reactorProjects.size()));
+    configuration.setFilesets(new ArrayList<>(filesets.values()));
+  }
+
+  /**
+   * @return the fileset configurations of the plugin and its executions in the project
+   */
+  private List<Xpp3Dom> findFilesets(final MavenProject project) {
+    final List<Xpp3Dom> filesets = new ArrayList<>();
+    final Plugin projectPlugin = project.getPlugin(plugin.getPluginLookupKey());
+    if (projectPlugin != null) {
+      addChildren(filesets, (Xpp3Dom) projectPlugin.getConfiguration());
+      for (PluginExecution execution : projectPlugin.getExecutions()) {
+        addChildren(filesets, (Xpp3Dom) execution.getConfiguration());
+      }
+    }
+    return filesets;
+  }
+
+  private static void addChildren(final List<Xpp3Dom> filesets, final Xpp3Dom configuration) {
+    final Xpp3Dom filesetsConfiguration = configuration != null ? configuration.getChild("filesets") : null;
+    if (filesetsConfiguration != null) {
+      for (Xpp3Dom fileset : filesetsConfiguration.getChildren("fileset")) {
+        filesets.add(fileset);
+      }
+    }
+  }
+
+  /**
+   * Adds a fileset of a project, with its directory or archive relative to
+   * the project the build was started in (this goal's project). Filesets configured more than once,
+   * e.g. for several executions, are added once, and filesets whose directory
+   * or archive does not exist, e.g. inherited by a module without web
+   * resources, are skipped. Filesets of pages to be crawled are taken as they are.
+   */
+  private void addFileset(final Map<String, FileSetCfg> filesets, final MavenProject project, final Xpp3Dom configuration)
+      throws MojoInvalidConfigurationException {
+    final FileSetCfg fileset = new FileSetCfg();
+    fileset.setDirectory(resolve(project, getValue(configuration, "directory")));
+    fileset.setArchive(resolve(project, getValue(configuration, "archive")));
+    fileset.setUrl(getValue(configuration, "url"));
+    fileset.setSitemap(getValue(configuration, "sitemap"));
+    final Integer maxPages = getIntValue(project, configuration, "maxPages");
+    if (maxPages != null) {
+      fileset.setMaxPages(maxPages);
+    }
+    final Integer maxDepth = getIntValue(project, configuration, "maxDepth");
+    if (maxDepth != null) {
+      fileset.setMaxDepth(maxDepth);
+    }
+    fileset.setGlob(getValue(configuration, "glob"));
+    fileset.setIncludes(getValues(configuration, "includes"));
+    fileset.setExcludes(getValues(configuration, "excludes"));
+    final String location = fileset.getLocation();
+    if (location == null || fileset.getUrl() == null && !getProject().getBasedir().toPath().resolve(location).toFile().exists()) {
+      getLog().debug("Skipping fileset " + location + " of " + project.getId() + ", it does not exist");
+    } else {
+      filesets.putIfAbsent(location + ";" + fileset.getGlob() + ";" + fileset.getIncludes() + ";" + fileset.getExcludes(), fileset);
+    }
+  }
+
+  private String resolve(final MavenProject project, final String location) {
+    String resolved = null;
+    if (location != null) {
+      final Path path = project.getBasedir().toPath().resolve(location).normalize();
+      resolved = getProject().getBasedir().toPath().toAbsolutePath().relativize(path.toAbsolutePath()).toString();
+      if (resolved.isEmpty()) {
+        resolved = ".";
+      }
+    }
+    return resolved;
+  }
+
+  private static String getValue(final Xpp3Dom configuration, final String name) {
+    final Xpp3Dom child = configuration.getChild(name);
+    return child != null && child.getValue() != null ? child.getValue().trim() : null;
+  }
+
+  /**
+   * @throws MojoInvalidConfigurationException if the value is no number
+   */
+  private static Integer getIntValue(final MavenProject project, final Xpp3Dom configuration, final String name)
+      throws MojoInvalidConfigurationException {
+    final String value = getValue(configuration, name);
+    try {
+      return value != null ? Integer.valueOf(value) : null;
+    } catch (NumberFormatException ex) {
+      throw new MojoInvalidConfigurationException("<" + name + "> of a <fileset> of " + project.getId() + " must be a number, not "
+          + value);
+    }
+  }
+
+  private static List<String> getValues(final Xpp3Dom configuration, final String name) {
+    final List<String> values = new ArrayList<>();
+    final Xpp3Dom child = configuration.getChild(name);
+    if (child != null) {
+      for (Xpp3Dom value : child.getChildren()) {
+        values.add(value.getValue() != null ? value.getValue().trim() : null);
+      }
+    }
+    return values;
+  }
+
+  public final void setReactorProjects(final List<MavenProject> reactorProjects) {
+    this.reactorProjects = reactorProjects;
+  }
+}
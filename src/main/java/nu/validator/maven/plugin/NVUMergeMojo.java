@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.File;
+import java.nio.file.FileSystem;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Combines the results of all shards validated with the shard option into
+ * one verdict and one set of reports
+ */
+@Mojo(name = "merge", threadSafe = true)
+public class NVUMergeMojo extends AbstractNVUValidatorMojo {
+
+  /**
+   * Directory the result files of all shards (shard-*-of-*.bin) were
+   * collected in
+   */
+  @Parameter(property = "vnu.shardDirectory", defaultValue = "${project.build.directory}/vnu")
+  private File shardDirectory;
+
+  NVUMergeMojo(final FileSystem fileSystem) {
+    super(fileSystem);
+  }
+
+  public NVUMergeMojo() {
+    super();
+  }
+
+  @Override
+  public final void execute() throws MojoFailureException {
+    createValidator().merge();
+  }
+
+  /**
+   * Merging reports all results of the shards, without validating anything
+   */
+  @Override
+  final void configure(final NVUValidatorConfiguration configuration) {
+    configuration.setFailfast(false);
+    configuration.setShard(null);
+    configuration.setShardDirectory(shardDirectory);
+  }
+
+  /**
+   * The filesets were validated by the shards already, they need not be configured
+   */
+  @Override
+  final boolean validatesFilesets() {
+    return false;
+  }
+
+  public final void setShardDirectory(final File shardDirectory) {
+    this.shardDirectory = shardDirectory;
+  }
+}
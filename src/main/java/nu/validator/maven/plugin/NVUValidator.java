@@ -24,29 +24,58 @@ package nu.validator.maven.plugin;
 
 import nu.validator.maven.plugin.configuration.DocumentType;
 import nu.validator.maven.plugin.configuration.FileSetCfg;
-import nu.validator.maven.plugin.configuration.FilterCfg;
+import nu.validator.maven.plugin.configuration.ReportFormat;
 import nu.validator.maven.plugin.configuration.ValidatorCfg;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
-import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.SortedSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
 import java.util.TreeSet;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import nu.validator.validation.SimpleDocumentValidator;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
-import org.xml.sax.SAXException;
 
 /**
  *
@@ -54,11 +83,86 @@ import org.xml.sax.SAXException;
  */
 public class NVUValidator {
 
-  private static final String SCHEMA_URL_HTML = "http://s.validator.nu/html5-all.rnc";
-  private static final String SCHEMA_URL_SVG = "http://s.validator.nu/svg-xhtml5-rdf-mathml.rnc";
-  private static final String SCHEMA_URL_XHTML = "http://s.validator.nu/xhtml5-all.rnc";
+  static final String SCHEMA_URL_HTML = "http://s.validator.nu/html5-all.rnc";
+  static final String SCHEMA_URL_SVG = "http://s.validator.nu/svg-xhtml5-rdf-mathml.rnc";
+  static final String SCHEMA_URL_XHTML = "http://s.validator.nu/xhtml5-all.rnc";
 
-  private final XMLErrorHandler errorHandler;
+  /**
+   * Number of files per thread that may be validated ahead of the file being reported
+   */
+  private static final int PENDING_FILES_PER_THREAD = 4;
+
+  /**
+   * Number of slowest files listed in the metrics
+   */
+  private static final int SLOWEST_FILES = 10;
+
+  /**
+   * Result of a file reported by a continuation, once the file with the same content is validated
+   */
+  private static final FileValidationResult DEFERRED = new FileValidationResult("", new ValidationErrorList(), false);
+
+  /**
+   * Idle validation workers, each owning a document validator and error handler
+   */
+  private final Queue<ValidationWorker> workers = new ConcurrentLinkedQueue<>();
+
+  /**
+   * With failfast, the result of the first file with errors, which aborts the validation
+   */
+  private final AtomicReference<FileValidationResult> failure = new AtomicReference<>();
+
+  /**
+   * Canonical paths of all files already taken by a fileset, so files of
+   * overlapping filesets are only validated and reported once
+   */
+  private final Set<Path> claimedFiles = ConcurrentHashMap.newKeySet();
+
+  /**
+   * URLs of all pages already taken by a fileset
+   */
+  private final Set<String> claimedPages = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Canonical paths of the files changed since the configured revision, null to validate all files
+   */
+  private Set<Path> changedFiles;
+
+  private final File basedir;
+
+  /**
+   * Receivers of the validation results
+   */
+  private final List<ValidationReporter> reporters = new ArrayList<>();
+
+  private final MessageFilter messageFilter;
+
+  private final ValidationMetrics metrics = new ValidationMetrics(SLOWEST_FILES);
+
+  /**
+   * Messages reported for all filesets
+   */
+  private final FilesetSummary total = new FilesetSummary();
+
+  /**
+   * Results of previous runs, null if caching is disabled
+   */
+  private final ValidationCache cache;
+
+  /**
+   * Validation times of previous runs, null to validate files in discovery order
+   */
+  private final DurationHistory durations;
+
+  /**
+   * Files validated in the current run by their content, so identical files are validated once
+   */
+  private final DuplicateContents duplicates = new DuplicateContents();
+
+  /**
+   * Connection to the validation daemon, null if validating in this JVM
+   */
+  private DaemonClient daemon;
 
   private final FileSystem fileSystem;
 
@@ -73,8 +177,29 @@ public class NVUValidator {
     log.info("Running Nu HtmlChecker (v.Nu) v" + nvuVersion);
     this.fileSystem = fileSystem;
     this.log = log;
-    this.errorHandler = new XMLErrorHandler(configuration.isAsciiquotes(), project.getBasedir());
+    this.basedir = project.getBasedir();
     this.configuration = configuration;
+    this.reporters.add(new LogReporter(log));
+    this.messageFilter = new MessageFilter(configuration.getValidatorCfg().getFilters());
+    if (configuration.getCacheFile() != null) {
+      this.cache = new ValidationCache(configuration.getCacheFile().toPath(), getCacheKey());
+    } else {
+      this.cache = null;
+    }
+    if (configuration.getDurationsFile() != null) {
+      this.durations = new DurationHistory(configuration.getDurationsFile().toPath());
+    } else {
+      this.durations = null;
+    }
+  }
+
+  /**
+   * @return a key covering all settings besides the file contents the validation results depend on
+   */
+  private String getCacheKey() {
+    return "vnu=" + nvuVersion
+        + ";forceType=" + configuration.getValidatorCfg().getForceType()
+        + ";asciiquotes=" + configuration.isAsciiquotes();
   }
 
   private boolean trueOrFailIf(final boolean fail) throws MojoFailureException {
@@ -90,93 +215,859 @@ public class NVUValidator {
    * @throws MojoFailureException
    */
   void validate() throws MojoFailureException {
-    boolean failed = false;
-    for (final FileSetCfg fileset : configuration.getFilesets()) {
-      this.errorHandler.clear();
-      if (!validateFileset(setupDocumentValidator(), fileset, configuration.getValidatorCfg())) {
-        failed = trueOrFailIf(configuration.isFailfast());
+    if (configuration.getShard() != null) {
+      log.info("Validating shard " + configuration.getShard());
+    }
+    findChangedFiles();
+    loadCache();
+    loadDurations();
+    final List<ValidationReporter> reportWriters = openReports();
+    connectDaemon();
+    final ExecutorService executor = createExecutor(configuration.getThreads());
+    final FilePrefetcher prefetcher = createPrefetcher();
+    try {
+      final List<FileSetCfg> filesets = configuration.getFilesets();
+      // with failfast, files are found lazily while validating instead
+      final long discoveryStart = System.nanoTime();
+      final List<List<String>> resolvedFiles = configuration.isFailfast() ? null : resolveFiles(filesets);
+      metrics.record(ValidationMetrics.Phase.DISCOVERY, System.nanoTime() - discoveryStart);
+      boolean failed = false;
+      for (int i = 0; i < filesets.size(); i++) {
+        final Stream<String> files;
+        if (filesets.get(i).getUrl() != null) {
+          // pages are found while crawling, when validating the fileset
+          files = null;
+        } else {
+          files = resolvedFiles == null ? getFiles(filesets.get(i)) : resolvedFiles.get(i).stream();
+        }
+        if (!validateFileset(executor, prefetcher, filesets.get(i), files, configuration.getValidatorCfg())) {
+          failed = trueOrFailIf(configuration.isFailfast());
+        }
+      }
+      if (filesets.size() > 1) {
+        log.info(String.format("Found %d warnings and %d errors in %d filesets", total.warnings, total.errors, filesets.size()));
+      }
+      finishReports(reportWriters);
+      if (failed) {
+        throw new MojoFailureException("Validation failed");
+      }
+    } finally {
+      shutdown(executor);
+      prefetcher.close();
+      duplicates.clear();
+      saveCache();
+      saveDurations();
+      if (daemon != null) {
+        daemon.close();
+        daemon = null;
+      }
+      closeReports(reportWriters);
+      writeMetrics();
+    }
+  }
+
+  /**
+   * Opens the configured report files and adds their writers to the reporters
+   *
+   * @return the report writers
+   */
+  private List<ValidationReporter> openReports() throws MojoFailureException {
+    final List<ValidationReporter> reportWriters = new ArrayList<>();
+    final Path basePath = basedir.toPath().toAbsolutePath();
+    try {
+      for (ReportFormat format : configuration.getReports()) {
+        final Path reportFile = configuration.getReportDirectory().toPath().resolve(format.getFileName());
+        switch (format) {
+          case JSONL:
+            reportWriters.add(new JsonLinesReporter(reportFile));
+            break;
+          case SARIF:
+            reportWriters.add(new SarifReporter(reportFile, basePath, nvuVersion));
+            break;
+          case JUNIT:
+            reportWriters.add(new JUnitReporter(reportFile, basePath));
+            break;
+          default:
+        }
+      }
+      final Shard shard = configuration.getShard();
+      if (shard != null) {
+        final Path resultFile = configuration.getShardDirectory().toPath().resolve(shard.getResultFileName());
+        reportWriters.add(new ShardResultReporter(resultFile, basePath, shard));
+      }
+    } catch (IOException ex) {
+      closeReports(reportWriters);
+      throw new MojoFailureException("Unable to write report (" + ex.getMessage() + ")");
+    }
+    reporters.addAll(reportWriters);
+    return reportWriters;
+  }
+
+  /**
+   * Combines the results written by all shards. The results are reported in
+   * file order, and the merge fails if any shard found errors.
+   *
+   * @throws MojoFailureException if results are missing or there are errors
+   */
+  void merge() throws MojoFailureException {
+    final List<FileValidationResult> results = readShardResults();
+    results.sort(Comparator.comparing(FileValidationResult::getFile));
+    final List<ValidationReporter> reportWriters = openReports();
+    final FilesetSummary summary = new FilesetSummary();
+    try {
+      for (FileValidationResult result : results) {
+        report(result, summary);
       }
+    } finally {
+      closeReports(reportWriters);
     }
-    if (failed) {
+    log.info(String.format("Found %d warnings and %d errors in %d files", summary.warnings, summary.errors, results.size()));
+    if (summary.errors > 0) {
       throw new MojoFailureException("Validation failed");
     }
   }
 
-  private SimpleDocumentValidator setupDocumentValidator() {
-    final SimpleDocumentValidator documentValidator = new SimpleDocumentValidator(true, false, true);
-    this.setSchema(documentValidator, SCHEMA_URL_HTML);
-    return documentValidator;
+  /**
+   * @return the results of all shards
+   * @throws MojoFailureException if the results of a shard are missing or incomplete
+   */
+  private List<FileValidationResult> readShardResults() throws MojoFailureException {
+    final Path directory = configuration.getShardDirectory().toPath();
+    final Path basePath = basedir.toPath().toAbsolutePath();
+    final List<FileValidationResult> results = new ArrayList<>();
+    final Set<Integer> shards = new TreeSet<>();
+    int shardCount = 0;
+    try (DirectoryStream<Path> resultFiles = Files.newDirectoryStream(directory, "shard-*-of-*.bin")) {
+      for (Path resultFile : resultFiles) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(resultFile)))) {
+          final Shard shard = ShardResultReporter.readShard(in);
+          if ((shardCount != 0 && shard.getCount() != shardCount) || !shards.add(shard.getIndex())) {
+            throw new MojoFailureException("Unexpected shard results " + resultFile);
+          }
+          shardCount = shard.getCount();
+          ShardResultReporter.readResults(in, basePath, results::add);
+        } catch (EOFException ex) {
+          throw new MojoFailureException("Incomplete shard results " + resultFile + ", the shard did not finish");
+        }
+      }
+    } catch (IOException ex) {
+      throw new MojoFailureException("Unable to read shard results in " + directory + " (" + ex.getMessage() + ")");
+    }
+    if (shardCount == 0 || shards.size() != shardCount) {
+      throw new MojoFailureException(String.format("Missing shard results in %s, found %d of %d shards %s",
+          directory, shards.size(), shardCount, shards));
+    }
+    log.info(String.format("Merging results of %d shards", shardCount));
+    return results;
+  }
+
+  /**
+   * Marks the reports as complete, after all files were validated
+   */
+  private void finishReports(final List<ValidationReporter> reportWriters) throws MojoFailureException {
+    try {
+      for (ValidationReporter reportWriter : reportWriters) {
+        reportWriter.finish();
+      }
+    } catch (IOException ex) {
+      throw new MojoFailureException("Unable to write report (" + ex.getMessage() + ")");
+    }
   }
 
-  private void setSchema(final SimpleDocumentValidator documentValidator, final String schemaUrl) {
-    if (!schemaUrl.equals(documentValidator.getMainSchemaUrl())) {
+  private void closeReports(final List<ValidationReporter> reportWriters) {
+    reporters.removeAll(reportWriters);
+    for (ValidationReporter reportWriter : reportWriters) {
       try {
-        documentValidator.setUpMainSchema(schemaUrl, errorHandler);
-        documentValidator.setUpValidatorAndParsers(errorHandler, false, false);
-      } catch (SAXException ex) {
-        Logger.getLogger(NVUValidatorMojo.class.getName()).log(Level.SEVERE, null, ex);
-      } catch (Exception ex) {
-        Logger.getLogger(NVUValidatorMojo.class.getName()).log(Level.SEVERE, null, ex);
+        reportWriter.close();
+      } catch (IOException ex) {
+        log.warn("Unable to write report (" + ex.getMessage() + ")");
       }
     }
   }
 
-  private boolean validateFileset(final SimpleDocumentValidator documentValidator, final FileSetCfg fileset, final ValidatorCfg validatorCfg) throws MojoFailureException {
-    this.log.info("Validating fileset " + fileset.getDirectory());
-    boolean validationFailed = false;
-    final SortedSet<String> files = getFiles(fileset);
+  private void writeMetrics() {
+    metrics.stop();
+    if (configuration.isMetrics()) {
+      metrics.log(log);
+    }
+    if (configuration.getMetricsFile() != null) {
+      try {
+        metrics.write(configuration.getMetricsFile().toPath(), nvuVersion);
+      } catch (IOException ex) {
+        log.warn("Unable to write metrics " + configuration.getMetricsFile() + " (" + ex.getMessage() + ")");
+      }
+    }
+  }
 
-    for (String file : files) {
-      log.debug("  Validating file " + file);
+  /**
+   * Watches the filesets and validates files again as soon as they are
+   * created or modified, until the thread is interrupted. Errors do not fail
+   * the validation.
+   *
+   * @throws MojoFailureException if the filesets can not be watched
+   */
+  void watch() throws MojoFailureException {
+    final Map<FileSetCfg, FileDiscovery> filesets = new LinkedHashMap<>();
+    for (final FileSetCfg fileset : configuration.getFilesets()) {
+      if (fileset.getArchive() == null && fileset.getUrl() == null) {
+        filesets.put(fileset, createDiscovery(fileset));
+      } else {
+        log.info("Not watching " + fileset.getLocation());
+      }
+    }
+    try (FilesetWatcher watcher = new FilesetWatcher(fileSystem, filesets, log)) {
+      log.info("Watching filesets for changes, stop with Ctrl+C");
+      while (!Thread.currentThread().isInterrupted()) {
+        revalidate(watcher.take());
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (IOException ex) {
+      throw new MojoFailureException("Mojo execution failed due to I/O error (" + ex.getMessage() + ").");
+    }
+  }
+
+  /**
+   * Validates files of the filesets again
+   *
+   * @param files the files to validate, by fileset
+   */
+  private void revalidate(final Map<FileSetCfg, List<String>> files) throws MojoFailureException {
+    final ExecutorService executor = createExecutor(configuration.getThreads());
+    final FilePrefetcher prefetcher = createPrefetcher();
+    try {
+      for (Map.Entry<FileSetCfg, List<String>> fileset : files.entrySet()) {
+        validateFileset(executor, prefetcher, fileset.getKey(), fileset.getValue().stream(), configuration.getValidatorCfg());
+      }
+    } finally {
+      shutdown(executor);
+      prefetcher.close();
+      duplicates.clear();
+      saveCache();
+      saveDurations();
+    }
+  }
+
+  /**
+   * Stops the executor and, once no worker is in use anymore, returns the
+   * workers' document validators to the JVM wide pool.
+   */
+  private void shutdown(final ExecutorService executor) {
+    executor.shutdownNow();
+    try {
+      if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+        ValidationWorker worker = workers.poll();
+        while (worker != null) {
+          worker.release();
+          worker = workers.poll();
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void findChangedFiles() throws MojoFailureException {
+    final String revision = configuration.getChangedSince();
+    if (revision != null) {
+      try {
+        changedFiles = new ChangedFiles(basedir, revision).find();
+      } catch (IOException ex) {
+        throw new MojoFailureException("Unable to determine files changed since " + revision + " (" + ex.getMessage() + ")", ex);
+      }
+      log.info(String.format("Validating only files changed since %s (%d changed files)", revision, changedFiles.size()));
+    }
+  }
+
+  private void connectDaemon() {
+    if (configuration.isDaemon()) {
+      try {
+        daemon = DaemonClient.connect(configuration.isAsciiquotes(), basedir,
+            TimeUnit.MINUTES.toMillis(configuration.getDaemonIdleTimeout()), log);
+        log.debug("Validating with validation daemon");
+      } catch (IOException ex) {
+        log.warn("Unable to use validation daemon, validating locally (" + ex.getMessage() + ")");
+      }
+    }
+  }
+
+  private void loadCache() {
+    if (cache != null) {
+      try {
+        cache.load();
+      } catch (IOException | RuntimeException ex) {
+        log.warn("Unable to read validation cache " + configuration.getCacheFile() + " (" + ex.getMessage() + ")");
+      }
+    }
+  }
+
+  private void saveCache() {
+    if (cache != null) {
+      try {
+        cache.save();
+      } catch (IOException ex) {
+        log.warn("Unable to write validation cache " + configuration.getCacheFile() + " (" + ex.getMessage() + ")");
+      }
+    }
+  }
+
+  private void loadDurations() {
+    if (durations != null) {
+      try {
+        durations.load();
+      } catch (IOException | RuntimeException ex) {
+        log.warn("Unable to read validation durations " + configuration.getDurationsFile() + " (" + ex.getMessage() + ")");
+      }
+    }
+  }
+
+  private void saveDurations() {
+    if (durations != null) {
+      try {
+        durations.save();
+      } catch (IOException ex) {
+        log.warn("Unable to write validation durations " + configuration.getDurationsFile() + " (" + ex.getMessage() + ")");
+      }
+    }
+  }
+
+  private ExecutorService createExecutor(final int threads) {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread = new Thread(runnable, "vnu-validator-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Files are read ahead by as many threads as validate them. Files validated
+   * by the daemon or with cached results are not read.
+   */
+  private FilePrefetcher createPrefetcher() {
+    return new FilePrefetcher(configuration.getThreads(), file -> daemon == null && (cache == null || !cache.isUnchanged(file)));
+  }
+
+  private ValidationWorker acquireWorker() {
+    final ValidationWorker worker = workers.poll();
+    if (worker != null) {
+      return worker;
+    }
+    return new ValidationWorker(configuration.isAsciiquotes(), basedir, () -> failure.get() != null);
+  }
+
+  /**
+   * Finds the files of all filesets up front. Files already part of a
+   * previous fileset are left out. Pages to be crawled are found while
+   * validating.
+   *
+   * @return the files of each fileset, null for filesets to be crawled
+   */
+  private List<List<String>> resolveFiles(final List<FileSetCfg> filesets) throws MojoFailureException {
+    final List<List<String>> resolvedFiles = new ArrayList<>(filesets.size());
+    for (final FileSetCfg fileset : filesets) {
+      if (fileset.getUrl() != null) {
+        resolvedFiles.add(null);
+      } else {
+        try (Stream<String> files = getFiles(fileset)) {
+          resolvedFiles.add(files.collect(Collectors.toList()));
+        }
+      }
+    }
+    return resolvedFiles;
+  }
+
+  /**
+   * @param files the files of the fileset, closed after validation, null for a fileset to be crawled
+   */
+  private boolean validateFileset(final ExecutorService executor, final FilePrefetcher prefetcher, final FileSetCfg fileset,
+      final Stream<String> files, final ValidatorCfg validatorCfg) throws MojoFailureException {
+    this.log.info("Validating fileset " + fileset.getLocation());
+    if (fileset.getUrl() != null) {
+      return crawlFileset(executor, prefetcher, fileset, validatorCfg);
+    }
+    try (ArchiveFileset archive = fileset.getArchive() != null ? new ArchiveFileset(getArchivePath(fileset)) : null) {
+      return validateFiles(executor, prefetcher, archive, files, validatorCfg);
+    } catch (IOException exception) {
+      throw new MojoFailureException("Mojo execution failed due to I/O error (" + exception.getMessage() + ").");
+    }
+  }
+
+  /**
+   * Crawls the pages of a fileset, validating each page as it arrives. Pages
+   * already claimed by a previous fileset are left out, changedSince does not
+   * apply to pages.
+   */
+  private boolean crawlFileset(final ExecutorService executor, final FilePrefetcher prefetcher, final FileSetCfg fileset,
+      final ValidatorCfg validatorCfg) throws MojoFailureException {
+    final FileDiscovery discovery = new FileDiscovery(fileSystem, getPath(""), fileset, configuration.getThreads(), log);
+    try (PageCrawler crawler = new PageCrawler(fileset, discovery, configuration.getThreads(), log)) {
+      return validateFiles(executor, prefetcher, crawler, crawler.crawl().filter(this::claimPage).filter(this::isInShard), validatorCfg);
+    } catch (IOException exception) {
+      throw new MojoFailureException("Unable to crawl " + fileset.getUrl() + " (" + exception.getMessage() + ")");
+    }
+  }
+
+  /**
+   * Validates the files of a fileset in parallel. Unless failing fast, the
+   * files expected to take longest are started first, so no thread is left
+   * validating a large file at the end. Results are reported in file order
+   * nonetheless; while too many results wait for an earlier file, files are
+   * started in file order, and no more files are started until the earlier
+   * file is reported. Crawled pages are validated in the order they arrive.
+   *
+   * @param source the archive or crawler of the files, null if they are files on disk
+   * @param files the files of the fileset, closed after validation
+   */
+  private boolean validateFiles(final ExecutorService executor, final FilePrefetcher prefetcher, final DocumentSource source,
+      final Stream<String> files, final ValidatorCfg validatorCfg) throws MojoFailureException {
+    final int maxPending = configuration.getThreads() * PENDING_FILES_PER_THREAD;
+
+    final FilesetSummary summary = new FilesetSummary();
+    final InOrderReporter inOrder = new InOrderReporter(summary);
+    final BlockingQueue<Future<FileValidationResult>> completed = new LinkedBlockingQueue<>();
+    final CompletionService<FileValidationResult> completion = new ExecutorCompletionService<>(executor, completed);
+    // files being validated, by their position in file order
+    final Map<Future<FileValidationResult>, Integer> pending = new ConcurrentHashMap<>();
+    try (Stream<String> closedFiles = files) {
+      final Map<String, Integer> positions = new HashMap<>();
+      final Iterator<String> iterator = configuration.isFailfast() || source instanceof PageCrawler ? closedFiles.iterator()
+          : schedule(closedFiles.collect(Collectors.toList()), positions, () -> inOrder.getWaiting() >= maxPending);
+      int found = 0;
+      while (failure.get() == null && hasNextFile(iterator)) {
+        final String file = iterator.next();
+        final int position = positions.isEmpty() ? found : positions.get(file);
+        found++;
+        final DocumentType documentType = getDocumentType(file, source, validatorCfg);
+        if (documentType == null) {
+          inOrder.complete(position, null);
+        } else {
+          // don't start files after the one results wait for while too many results wait, so they stay bounded
+          while (pending.size() >= maxPending
+              || !pending.isEmpty() && inOrder.getWaiting() >= maxPending && position != inOrder.getNext()) {
+            completeNext(completion, pending, inOrder);
+          }
+          final Future<ByteBuffer> content = source == null ? prefetcher.prefetch(Paths.get(file)) : prefetcher.prefetch(source, file);
+          final Consumer<CompletableFuture<FileValidationResult>> defer = deferred -> {
+            pending.put(deferred, position);
+            deferred.whenComplete((result, ex) -> completed.add(deferred));
+          };
+          pending.put(completion.submit(() -> validateAndFilter(file, source, content, documentType, validatorCfg, pending.keySet(),
+              defer)), position);
+        }
+      }
+    } catch (UncheckedIOException exception) {
+      throw new MojoFailureException("Mojo execution failed due to I/O error (" + exception.getCause().getMessage() + ").");
+    }
+    while (!pending.isEmpty()) {
+      completeNext(completion, pending, inOrder);
+    }
+    if (failure.get() != null) {
+      report(failure.get(), summary);
+    }
+    this.log.info(String.format("Found %d warnings and %d errors", summary.warnings, summary.errors));
+    total.warnings += summary.warnings;
+    total.errors += summary.errors;
+    return summary.errors == 0;
+  }
+
+  /**
+   * Orders files by their expected validation time, longest first. Files
+   * expected to take equally long stay in file order.
+   *
+   * @param files the files, in file order
+   * @param positions receives the position of each file in file order
+   * @param inFileOrder whether to start the remaining files in file order instead, checked for every file
+   * @return the files in the order to start their validation
+   */
+  private Iterator<String> schedule(final List<String> files, final Map<String, Integer> positions,
+      final BooleanSupplier inFileOrder) {
+    final Map<String, Double> estimates = new HashMap<>();
+    final double nanosPerByte = durations != null ? durations.getNanosPerByte() : 0;
+    for (int i = 0; i < files.size(); i++) {
+      final String file = files.get(i);
+      positions.put(file, i);
+      estimates.put(file, durations != null ? durations.estimate(file, nanosPerByte) : 0);
+    }
+    final List<String> scheduled = new ArrayList<>(files);
+    scheduled.sort((first, second) -> Double.compare(estimates.get(second), estimates.get(first)));
+    final List<Integer> longestFirst = new ArrayList<>(files.size());
+    for (String file : scheduled) {
+      longestFirst.add(positions.get(file));
+    }
+    return new ScheduledFiles(files, longestFirst, inFileOrder);
+  }
+
+  /**
+   * Waits for the validation of any pending file to complete
+   */
+  private void completeNext(final CompletionService<FileValidationResult> completion,
+      final Map<Future<FileValidationResult>, Integer> pending, final InOrderReporter inOrder) throws MojoFailureException {
+    final Future<FileValidationResult> result;
+    try {
+      result = completion.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MojoFailureException("Validation interrupted");
+    }
+    final FileValidationResult fileResult = getResult(result);
+    final Integer position = pending.remove(result);
+    if (fileResult != DEFERRED) {
+      inOrder.complete(position, fileResult);
+    }
+  }
+
+  /**
+   * @return whether there are more files, waiting for the discovery to find them
+   */
+  private boolean hasNextFile(final Iterator<String> files) {
+    final long start = System.nanoTime();
+    final boolean hasNext = files.hasNext();
+    metrics.record(ValidationMetrics.Phase.DISCOVERY, System.nanoTime() - start);
+    return hasNext;
+  }
+
+  /**
+   * Validates a file and filters its validation errors. With failfast, the
+   * first file with errors cancels the validation of all other files.
+   *
+   * @param source the archive or crawler of the file, null if it is a file on disk
+   * @param content the content of the file, being read ahead
+   * @param pending the results of all files currently being validated
+   * @param defer takes the result of the file if it is only known once another file with the same content is validated
+   * @return the messages to be reported for the file, null if the validation was cancelled, DEFERRED if deferred
+   */
+  private FileValidationResult validateAndFilter(final String file, final DocumentSource source, final Future<ByteBuffer> content,
+      final DocumentType documentType, final ValidatorCfg validatorCfg, final Collection<Future<FileValidationResult>> pending,
+      final Consumer<CompletableFuture<FileValidationResult>> defer) throws MojoFailureException {
+    FileValidationResult result = null;
+    // a file cancelled by failfast is not started, even if it was waiting to run already
+    if (failure.get() == null && !Thread.currentThread().isInterrupted()) {
+      // archive entries and pages are neither cached nor validated by the daemon
+      final CompletableFuture<List<ValidationError>> validationErrors = source == null
+          ? validateFile(file, awaitContent(file, content), documentType)
+          : checkDistinctFile(file, source, awaitContent(file, content), documentType);
+      if (validationErrors.isDone()) {
+        result = filter(file, validationErrors.join(), validatorCfg, pending);
+      } else {
+        // don't keep this thread waiting for the other file, filter once it is validated
+        defer.accept(validationErrors.thenApply(errors -> filter(file, errors, validatorCfg, pending)));
+        result = DEFERRED;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Filters the validation errors of a file. With failfast, the first file
+   * with errors cancels the validation of all other files.
+   *
+   * @param validationErrors the validation errors of the file, null if it was not validated completely
+   * @param pending the results of all files currently being validated
+   * @return the messages to be reported for the file, null if the validation was cancelled
+   */
+  private FileValidationResult filter(final String file, final List<ValidationError> validationErrors,
+      final ValidatorCfg validatorCfg, final Collection<Future<FileValidationResult>> pending) {
+    if (validationErrors == null) {
+      return null;
+    }
+    final long filterStart = System.nanoTime();
+    final FileValidationResult result = toResult(file, validationErrors, validatorCfg);
+    metrics.record(ValidationMetrics.Phase.FILTERING, System.nanoTime() - filterStart);
+    if (configuration.isFailfast() && result.getErrors() > 0 && failure.compareAndSet(null, result)) {
+      for (Future<FileValidationResult> future : pending) {
+        future.cancel(true);
+      }
+    }
+    return failure.get() == null ? result : null;
+  }
+
+  /**
+   * Passes the result of a file to the reporters and counts its messages
+   */
+  private void report(final FileValidationResult result, final FilesetSummary summary) throws MojoFailureException {
+    if (result == null) {
+      return;
+    }
+    final long start = System.nanoTime();
+    try {
+      for (ValidationReporter reporter : reporters) {
+        reporter.report(result);
+      }
+    } catch (UncheckedIOException ex) {
+      throw new MojoFailureException("Unable to write report (" + ex.getCause().getMessage() + ")");
+    }
+    metrics.record(ValidationMetrics.Phase.REPORTING, System.nanoTime() - start);
+    summary.warnings += result.getWarnings();
+    summary.errors += result.getErrors();
+    if (result.getErrors() > 0) {
+      trueOrFailIf(configuration.isFailfast());
+    }
+  }
+
+  /**
+   * Drops filtered and ignored messages from the validation errors of a file
+   *
+   * @return the messages to be reported for the file
+   */
+  private FileValidationResult toResult(final String file, final List<ValidationError> validationErrors, final ValidatorCfg validatorCfg) {
+    final List<ValidationError> messages = new ValidationErrorList();
+    for (ValidationError error : validationErrors) {
+      final boolean ignored = error.getType() == ValidationError.Type.WARNING
+          && validatorCfg.getWarnings() == ValidatorCfg.WarningConfig.IGNORE;
+      if (!ignored && !messageFilter.isFiltered(error)) {
+        messages.add(error);
+      }
+    }
+    return new FileValidationResult(file, messages, validatorCfg.getWarnings() == ValidatorCfg.WarningConfig.ERROR);
+  }
+
+  /**
+   * @return the result of a file, null if its validation was cancelled
+   */
+  private FileValidationResult getResult(final Future<FileValidationResult> result) throws MojoFailureException {
+    try {
+      return result.get();
+    } catch (CancellationException ex) {
+      return null;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MojoFailureException("Validation interrupted");
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof MojoFailureException) {
+        throw (MojoFailureException) ex.getCause();
+      }
+      throw new MojoFailureException("Validation failed due to unexpected error", ex.getCause());
+    }
+  }
+
+  /**
+   * Waits for the content of a file to be read ahead
+   *
+   * @return the content of the file, null if it was not read ahead
+   */
+  private ByteBuffer awaitContent(final String file, final Future<ByteBuffer> content) throws MojoFailureException {
+    final long start = System.nanoTime();
+    try {
+      return FilePrefetcher.get(content);
+    } catch (FileNotFoundException ex) {
+      throw new MojoFailureException(String.format("File not found: %s", file));
+    } catch (IOException ex) {
+      throw new MojoFailureException(String.format("Error reading file: %s", file));
+    } finally {
+      metrics.record(ValidationMetrics.Phase.READ, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Validates a single file, unless the cache holds the result for its current content
+   *
+   * @param content the content of the file, null to read it if needed
+   * @return the validation errors of this file, once validated
+   */
+  private CompletableFuture<List<ValidationError>> validateFile(final String file, final ByteBuffer content,
+      final DocumentType documentType) throws MojoFailureException {
+    if (cache == null) {
+      return checkDistinctFile(file, null, content, documentType);
+    }
+    final ValidationCache.Fingerprint fingerprint;
+    final List<ValidationError> cached;
+    final long cacheStart = System.nanoTime();
+    try {
+      fingerprint = cache.fingerprint(Paths.get(file), content);
+      cached = cache.get(fingerprint);
+    } catch (FileNotFoundException | NoSuchFileException ex) {
+      throw new MojoFailureException(String.format("File not found: %s", file));
+    } catch (IOException ex) {
+      throw new MojoFailureException(String.format("Error reading file: %s", file));
+    }
+    metrics.record(ValidationMetrics.Phase.CACHE, System.nanoTime() - cacheStart);
+    final CompletableFuture<List<ValidationError>> errors;
+    if (cached == null) {
+      errors = checkDistinctFile(file, null, content, documentType).thenApply(validated -> {
+        if (validated != null && failure.get() == null) {
+          cache.put(fingerprint, validated);
+        }
+        return validated;
+      });
+    } else {
+      log.debug("  Unchanged file " + file);
+      metrics.recordCachedFile();
+      errors = CompletableFuture.completedFuture(cached);
+    }
+    return errors;
+  }
+
+  /**
+   * Validates a single file, unless another file with the same content was
+   * validated in this run already. Files not read ahead, i.e. validated by
+   * the daemon, are always validated.
+   *
+   * @param source the archive or crawler of the file, null if it is a file on disk
+   * @param content the content of the file, null to read it
+   * @return the validation errors of this file, once validated; null if the file was not validated completely
+   */
+  private CompletableFuture<List<ValidationError>> checkDistinctFile(final String file, final DocumentSource source,
+      final ByteBuffer content, final DocumentType documentType) throws MojoFailureException {
+    final DuplicateContents.Original original = content != null ? claimContent(file, documentType, content) : null;
+    if (original != null && !original.isFile(file)) {
+      return getDuplicateErrors(file, original);
+    }
+    List<ValidationError> errors = null;
+    try {
+      errors = source == null ? checkFile(file, content, documentType) : checkFileWithWorker(file, source, content, documentType);
+    } finally {
+      if (original != null) {
+        original.complete(failure.get() == null ? errors : null);
+      }
+    }
+    return CompletableFuture.completedFuture(errors);
+  }
+
+  private DuplicateContents.Original claimContent(final String file, final DocumentType documentType, final ByteBuffer content) {
+    final long start = System.nanoTime();
+    final DuplicateContents.Original original = duplicates.claim(file, getRelativePath(file), documentType, content);
+    metrics.record(ValidationMetrics.Phase.CACHE, System.nanoTime() - start);
+    return original;
+  }
+
+  /**
+   * @return the validation errors of this file, once the first file with the same content is validated;
+   *         null if the first file was not validated completely
+   */
+  private CompletableFuture<List<ValidationError>> getDuplicateErrors(final String file, final DuplicateContents.Original original) {
+    return original.getErrors(file, getRelativePath(file)).thenApply(errors -> {
+      if (errors != null) {
+        log.debug("  Same content as " + original.getFile() + ", not validating file " + file);
+        metrics.recordDuplicateFile();
+      }
+      return errors;
+    });
+  }
+
+  /**
+   * Validates a single file with the validation daemon, if available
+   *
+   * @param content the content of the file, null to read it
+   * @return the validation errors of this file
+   */
+  private List<ValidationError> checkFile(final String file, final ByteBuffer content, final DocumentType documentType)
+      throws MojoFailureException {
+    List<ValidationError> errors = null;
+    if (daemon != null) {
       try {
-        checkFile(documentValidator, Paths.get(file).toFile(), validatorCfg);
+        log.debug("  Validating file " + file + " with daemon");
+        final long start = System.nanoTime();
+        errors = daemon.validate(file, documentType);
+        if (errors != null) {
+          recordFile(file, documentType, Paths.get(file).toFile().length(), System.nanoTime() - start);
+        }
       } catch (FileNotFoundException ex) {
         throw new MojoFailureException(String.format("File not found: %s", file));
       } catch (IOException ex) {
         throw new MojoFailureException(String.format("Error reading file: %s", file));
-      } catch (SAXException ex) {
-        this.errorHandler.addError(new ValidationError(ValidationError.Type.WARNING, file, -1, -1, ex.getMessage()));
-      }
-    }
-    int warnings = 0;
-    int errors = 0;
-    for (ValidationError error : this.errorHandler.getErrors()) {
-      switch (error.getType()) {
-        case WARNING:
-          switch (validatorCfg.getWarnings()) {
-            case WARN:
-              if (!isFiltered(error, validatorCfg.getFilters())) {
-                this.log.warn(error.toString());
-                warnings++;
-              }
-              break;
-            case ERROR:
-              if (!isFiltered(error, validatorCfg.getFilters())) {
-                this.log.error(error.toString());
-                validationFailed = trueOrFailIf(configuration.isFailfast());
-                errors++;
-              }
-              break;
-            case IGNORE:
-            default:
-          }
-          break;
-        case FATAL:
-        case ERROR:
-          if (!isFiltered(error, validatorCfg.getFilters())) {
-            this.log.error(error.toString());
-            validationFailed = trueOrFailIf(configuration.isFailfast());
-            errors++;
-          }
-          break;
-        default:
       }
     }
-    this.log.info(String.format("Found %d warnings and %d errors", warnings, errors));
-    return !validationFailed;
+    return errors != null ? errors : checkFileWithWorker(file, null, content, documentType);
+  }
+
+  /**
+   * Validates a single file with a validation worker of the current thread
+   *
+   * @param source the archive or crawler of the file, null if it is a file on disk
+   * @param content the content of the file, null to read it
+   * @return the validation errors of this file
+   */
+  private List<ValidationError> checkFileWithWorker(final String file, final DocumentSource source, final ByteBuffer content,
+      final DocumentType documentType) throws MojoFailureException {
+    final ValidationWorker worker = acquireWorker();
+    try {
+      log.debug("  Validating file " + file);
+      final ByteBuffer input = content != null ? content : FilePrefetcher.read(Paths.get(file));
+      final String systemId = source != null ? source.getSystemId(file) : Paths.get(file).toFile().toURI().toURL().toString();
+      final long size = input.remaining();
+      final long setupBefore = worker.getSetupNanos();
+      final long start = System.nanoTime();
+      final List<ValidationError> errors = worker.validate(file, systemId, input, documentType);
+      final long setup = worker.getSetupNanos() - setupBefore;
+      metrics.record(ValidationMetrics.Phase.SETUP, setup);
+      recordFile(file, documentType, size, System.nanoTime() - start - setup);
+      return errors;
+    } catch (ValidatorSetupException ex) {
+      throw new MojoFailureException(ex.getMessage(), ex);
+    } catch (FileNotFoundException ex) {
+      throw new MojoFailureException(String.format("File not found: %s", file));
+    } catch (IOException ex) {
+      throw new MojoFailureException(String.format("Error reading file: %s", file));
+    } finally {
+      workers.offer(worker);
+    }
+  }
+
+  /**
+   * Records the validation time of a file in the metrics and the duration
+   * history, unless failfast aborted the validation before it completed
+   */
+  private void recordFile(final String file, final DocumentType documentType, final long bytes, final long nanos) {
+    if (failure.get() == null && !Thread.currentThread().isInterrupted()) {
+      metrics.recordFile(file, documentType, bytes, nanos);
+      // pages are validated in the order they arrive, their durations are not needed
+      if (durations != null && !PageCrawler.isPage(file)) {
+        durations.record(file, bytes, nanos);
+      }
+    }
+  }
+
+  /**
+   * Finds the files of a fileset. The files are sorted, except with failfast,
+   * where they are found lazily while validating. Files already claimed by a
+   * previous fileset, or unchanged with changedSince, are left out.
+   *
+   * @return the files of the fileset, to be closed after use
+   */
+  private Stream<String> getFiles(final FileSetCfg fileset) throws MojoFailureException {
+    if (fileset.getArchive() != null) {
+      return getArchiveFiles(fileset);
+    }
+    final FileDiscovery discovery = createDiscovery(fileset);
+    try {
+      final Stream<String> files = configuration.isFailfast() ? discovery.findLazily() : discovery.findSorted().stream();
+      return files.filter(this::claim).filter(this::isInShard);
+    } catch (IOException exception) {
+      throw new MojoFailureException("Mojo execution failed due to I/O error (" + exception.getMessage() + ").");
+    }
+  }
+
+  /**
+   * Finds the entries of an archive fileset. Entries already claimed by a
+   * previous fileset are left out, changedSince does not apply to archives.
+   * Without glob and includes, only entries with the extension of a document
+   * type are taken, as archives usually hold classes, images and the like.
+   *
+   * @return the entries of the fileset, sorted
+   */
+  private Stream<String> getArchiveFiles(final FileSetCfg fileset) throws MojoFailureException {
+    final Path archive = getArchivePath(fileset);
+    try (ArchiveFileset archiveFileset = new ArchiveFileset(archive)) {
+      final FileDiscovery discovery = new FileDiscovery(fileSystem, archive, fileset, configuration.getThreads(), log);
+      final boolean documentsOnly = discovery.isIncludingAll() && configuration.getValidatorCfg().getForceType() == null;
+      return archiveFileset.findSorted(discovery).stream()
+          .filter(entry -> !documentsOnly || getDocumentTypeByExtension(entry.substring(entry.lastIndexOf('/') + 1)) != null)
+          .filter(this::claimEntry).filter(this::isInShard);
+    } catch (IOException exception) {
+      throw new MojoFailureException("Mojo execution failed due to I/O error (" + exception.getMessage() + ").");
+    }
+  }
+
+  private Path getArchivePath(final FileSetCfg fileset) throws MojoFailureException {
+    final Path archive = getPath(fileset.getArchive());
+    if (!Files.isRegularFile(archive)) {
+      throw new MojoFailureException("Mojo error: archive " + fileset.getArchive() + " does not exist.");
+    }
+    return archive;
   }
 
-  private SortedSet<String> getFiles(final FileSetCfg fileset) throws MojoFailureException {
+  private FileDiscovery createDiscovery(final FileSetCfg fileset) throws MojoFailureException {
     final Path srcDirectory = getPath(fileset.getDirectory());
 
     if (!Files.exists(srcDirectory)) {
@@ -184,57 +1075,103 @@ public class NVUValidator {
     } else if (!Files.isDirectory(srcDirectory)) {
       throw new MojoFailureException("Mojo error: " + fileset.getDirectory() + " is not a directory.");
     }
-    final SortedSet<String> files = new TreeSet<>();
-    final PathMatcher pathMatcher = this.fileSystem.getPathMatcher("glob:" + fileset.getGlob());
+    return new FileDiscovery(fileSystem, srcDirectory, fileset, configuration.getThreads(), log);
+  }
 
-    try {
-      Files.walk(srcDirectory, FileVisitOption.FOLLOW_LINKS)
-          .filter(path -> Files.isRegularFile(path) && pathMatcher.matches(srcDirectory.relativize(path)))
-          .forEach(path -> files.add(path.toString()));
-    } catch (IOException exception) {
-      throw new MojoFailureException("Mojo execution failed due to I/O error (" + exception.getMessage() + ").");
+  /**
+   * @return whether the file is to be validated and was not claimed by a fileset before
+   */
+  private boolean claim(final String file) {
+    final Path canonicalPath = ChangedFiles.toCanonicalPath(Paths.get(file));
+    if (changedFiles != null && !changedFiles.contains(canonicalPath)) {
+      return false;
+    }
+    final boolean claimed = claimedFiles.add(canonicalPath);
+    if (!claimed) {
+      log.debug("  Skipping file " + file + ", already part of a previous fileset");
+    }
+    return claimed;
+  }
+
+  /**
+   * @return whether the file is part of the shard to validate, if any
+   */
+  private boolean isInShard(final String file) {
+    final Shard shard = configuration.getShard();
+    return shard == null || shard.contains(getRelativePath(file));
+  }
+
+  /**
+   * @return the path of the file or archive entry relative to the project's base directory, as reported,
+   *     pages are reported by their URL
+   */
+  private String getRelativePath(final String file) {
+    if (PageCrawler.isPage(file)) {
+      return file;
+    }
+    return basedir.toPath().toAbsolutePath().relativize(Paths.get(file).toAbsolutePath()).toString();
+  }
+
+  /**
+   * @return whether the archive entry was not claimed by a fileset before
+   */
+  private boolean claimEntry(final String file) {
+    final boolean claimed = claimedFiles.add(Paths.get(file));
+    if (!claimed) {
+      log.debug("  Skipping file " + file + ", already part of a previous fileset");
+    }
+    return claimed;
+  }
+
+  /**
+   * @return whether the page was not claimed by a fileset before
+   */
+  private boolean claimPage(final String page) {
+    final boolean claimed = claimedPages.add(page);
+    if (!claimed) {
+      log.debug("  Skipping page " + page + ", already part of a previous fileset");
     }
-    return files;
+    return claimed;
   }
 
+  /**
+   * @return the path of the source, relative paths are resolved against the project's base directory
+   */
   private Path getPath(final String source) {
-    return this.fileSystem.getPath(source);
+    return this.fileSystem.getPath(basedir.getAbsolutePath()).resolve(source);
+  }
+
+  /**
+   * @param source the archive or crawler of the file, null if it is a file on disk
+   * @return the forced document type, the type declared by the source or the type by the file extension
+   */
+  private DocumentType getDocumentType(final String file, final DocumentSource source, final ValidatorCfg validatorCfg) {
+    final DocumentType declared = source != null && validatorCfg.getForceType() == null ? source.getDocumentType(file) : null;
+    return declared != null ? declared : getDocumentType(Paths.get(file).toFile(), validatorCfg);
   }
 
-  private void checkFile(final SimpleDocumentValidator documentValidator, final File file, final ValidatorCfg validatorCfg) throws IOException, SAXException {
-    DocumentType documentType;
+  private DocumentType getDocumentType(final File file, final ValidatorCfg validatorCfg) {
+    final DocumentType documentType;
     if (validatorCfg.getForceType() != null) {
       documentType = validatorCfg.getForceType();
-      if (documentType == null) {
-        documentType = DocumentType.HTML;
-      }
     } else {
-      final String extension = getFileExtension(file.getName());
-      documentType = Stream.of(DocumentType.values())
-          .filter(type -> type.getExtensions().contains(extension))
-          .findAny()
-          .orElse(null);
+      documentType = getDocumentTypeByExtension(file.getName());
       if (documentType == null) {
         log.warn("Unable to determine file type of file " + file.getAbsolutePath());
       }
     }
-    if (documentType != null) {
-      switch (documentType) {
-        case HTML:
-          checkHtmlFile(documentValidator, file, true);
-          break;
-        case CSS:
-          checkCssFile(documentValidator, file, true);
-          break;
-        case SVG:
-          checkSvgFile(documentValidator, file);
-          break;
-        case XHTML:
-          checkXHTMLFile(documentValidator, file);
-          break;
-        default:
-      }
-    }
+    return documentType;
+  }
+
+  /**
+   * @return the document type of files with the extension of the file name, null if there is none
+   */
+  private DocumentType getDocumentTypeByExtension(final String filename) {
+    final String extension = getFileExtension(filename);
+    return Stream.of(DocumentType.values())
+        .filter(type -> type.getExtensions().contains(extension))
+        .findAny()
+        .orElse(null);
   }
 
   private String getFileExtension(final String filename) {
@@ -247,30 +1184,122 @@ public class NVUValidator {
     return extension;
   }
 
-  private boolean isFiltered(final ValidationError error, final List<FilterCfg> filters) {
-    return filters.stream()
-        .anyMatch(filter -> (
-                filter.getType() == FilterCfg.FilterType.ALL
-                  || filter.getType().getErrorType() == error.getType())
-                && filter.getPattern().matcher(error.getMessage()).find());
-  }
+  /**
+   * Files in the order to start their validation, longest first or, while
+   * results wait to be reported, in file order
+   */
+  private static final class ScheduledFiles implements Iterator<String> {
 
-  private void checkHtmlFile(final SimpleDocumentValidator documentValidator, final File file, final boolean asUTF8) throws IOException, SAXException {
-    this.setSchema(documentValidator, SCHEMA_URL_HTML);
-    documentValidator.checkHtmlFile(file, asUTF8);
-  }
+    private final List<String> files;
+
+    /**
+     * Positions of the files, longest first
+     */
+    private final List<Integer> longestFirst;
+
+    private final boolean[] started;
+
+    private final BooleanSupplier inFileOrder;
+
+    private int nextLongest;
+
+    private int nextInFileOrder;
+
+    private int remaining;
 
-  private void checkSvgFile(final SimpleDocumentValidator documentValidator, final File file) throws IOException, SAXException {
-    this.setSchema(documentValidator, SCHEMA_URL_SVG);
-    documentValidator.checkXmlFile(file);
+    private ScheduledFiles(final List<String> files, final List<Integer> longestFirst, final BooleanSupplier inFileOrder) {
+      this.files = files;
+      this.longestFirst = longestFirst;
+      this.started = new boolean[files.size()];
+      this.inFileOrder = inFileOrder;
+      this.remaining = files.size();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final int position;
+      if (inFileOrder.getAsBoolean()) {
+        while (started[nextInFileOrder]) {
+          nextInFileOrder++;
+        }
+        position = nextInFileOrder;
+      } else {
+        while (started[longestFirst.get(nextLongest)]) {
+          nextLongest++;
+        }
+        position = longestFirst.get(nextLongest);
+      }
+      started[position] = true;
+      remaining--;
+      return files.get(position);
+    }
   }
 
-  private void checkCssFile(final SimpleDocumentValidator documentValidator, final File file, final boolean asUTF8) throws IOException, SAXException {
-    documentValidator.checkCssFile(file, asUTF8);
+  /**
+   * Reports results completed in any order in file order
+   */
+  private final class InOrderReporter {
+
+    /**
+     * Completed results not reported yet, by position, null for files not validated
+     */
+    private final Map<Integer, FileValidationResult> completed = new HashMap<>();
+
+    private final FilesetSummary summary;
+
+    /**
+     * Position of the next result to report
+     */
+    private int next;
+
+    private InOrderReporter(final FilesetSummary summary) {
+      this.summary = summary;
+    }
+
+    /**
+     * Reports the result and all completed results following it
+     *
+     * @param position the position of the file in file order
+     * @param result the result of the file, null if it was not validated
+     */
+    private void complete(final int position, final FileValidationResult result) throws MojoFailureException {
+      completed.put(position, result);
+      while (completed.containsKey(next)) {
+        report(completed.remove(next), summary);
+        next++;
+      }
+    }
+
+    /**
+     * @return the number of completed results waiting for an earlier result
+     */
+    private int getWaiting() {
+      return completed.size();
+    }
+
+    /**
+     * @return the position of the next result to report
+     */
+    private int getNext() {
+      return next;
+    }
   }
 
-  private void checkXHTMLFile(final SimpleDocumentValidator documentValidator, final File file) throws IOException, SAXException {
-    this.setSchema(documentValidator, SCHEMA_URL_XHTML);
-    documentValidator.checkXmlFile(file);
+  /**
+   * Message counts of a fileset
+   */
+  private static final class FilesetSummary {
+
+    private int warnings;
+
+    private int errors;
   }
 }
@@ -23,8 +23,11 @@
 package nu.validator.maven.plugin;
 
 import nu.validator.maven.plugin.configuration.FileSetCfg;
+import nu.validator.maven.plugin.configuration.ReportFormat;
 import nu.validator.maven.plugin.configuration.ValidatorCfg;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -53,6 +56,68 @@ class NVUValidatorConfiguration {
    */
   private ValidatorCfg validatorCfg;
 
+  /**
+   * Number of threads validating files in parallel
+   */
+  private int threads = 1;
+
+  /**
+   * File to cache validation results in, null to disable caching
+   */
+  private File cacheFile;
+
+  /**
+   * Git revision to only validate files changed since, null to validate all files
+   */
+  private String changedSince;
+
+  /**
+   * Validate with the validation daemon instead of in the build's JVM
+   */
+  private boolean daemon;
+
+  /**
+   * Minutes a validation daemon keeps running without requests
+   */
+  private long daemonIdleTimeout;
+
+  /**
+   * File to write timing metrics to, null to not write them
+   */
+  private File metricsFile;
+
+  /**
+   * Log a timing summary with the slowest files
+   */
+  private boolean metrics;
+
+  /**
+   * Machine readable reports to write
+   */
+  private List<ReportFormat> reports = new ArrayList<>();
+
+  /**
+   * Directory to write the reports to
+   */
+  private File reportDirectory;
+
+  /**
+   * File to record the validation time of each file in, null to validate
+   * files in discovery order
+   */
+  private File durationsFile;
+
+  /**
+   * The part of the files to validate, null to validate all files
+   */
+  private Shard shard;
+
+  /**
+   * Directory to write the results of the shard to, and to read the results
+   * of all shards from when merging
+   */
+  private File shardDirectory;
+
   public List<FileSetCfg> getFilesets() {
     return filesets;
   }
@@ -85,5 +150,101 @@ class NVUValidatorConfiguration {
     this.validatorCfg = validatorCfg;
   }
 
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(final int threads) {
+    this.threads = threads;
+  }
+
+  public File getCacheFile() {
+    return cacheFile;
+  }
+
+  public void setCacheFile(final File cacheFile) {
+    this.cacheFile = cacheFile;
+  }
+
+  public String getChangedSince() {
+    return changedSince;
+  }
+
+  public void setChangedSince(final String changedSince) {
+    this.changedSince = changedSince;
+  }
+
+  public boolean isDaemon() {
+    return daemon;
+  }
+
+  public void setDaemon(final boolean daemon) {
+    this.daemon = daemon;
+  }
+
+  public long getDaemonIdleTimeout() {
+    return daemonIdleTimeout;
+  }
+
+  public void setDaemonIdleTimeout(final long daemonIdleTimeout) {
+    this.daemonIdleTimeout = daemonIdleTimeout;
+  }
+
+  public File getMetricsFile() {
+    return metricsFile;
+  }
+
+  public void setMetricsFile(final File metricsFile) {
+    this.metricsFile = metricsFile;
+  }
+
+  public boolean isMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(final boolean metrics) {
+    this.metrics = metrics;
+  }
+
+  public List<ReportFormat> getReports() {
+    return reports;
+  }
+
+  public void setReports(final List<ReportFormat> reports) {
+    this.reports = reports;
+  }
+
+  public File getReportDirectory() {
+    return reportDirectory;
+  }
+
+  public void setReportDirectory(final File reportDirectory) {
+    this.reportDirectory = reportDirectory;
+  }
+
+  public File getDurationsFile() {
+    return durationsFile;
+  }
+
+  public void setDurationsFile(final File durationsFile) {
+    this.durationsFile = durationsFile;
+  }
+
+  Shard getShard() {
+    return shard;
+  }
+
+  void setShard(final Shard shard) {
+    this.shard = shard;
+  }
+
+  public File getShardDirectory() {
+    return shardDirectory;
+  }
+
+  public void setShardDirectory(final File shardDirectory) {
+    this.shardDirectory = shardDirectory;
+  }
+
 
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.nio.file.FileSystem;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Validates HTML / CSS / SVG files, then keeps watching the filesets and
+ * validates files again as soon as they change. The validators stay set up
+ * between changes, so results are reported right after saving a file.
+ * Runs until maven is stopped.
+ */
+@Mojo(name = "watch", threadSafe = true)
+public class NVUWatchMojo extends AbstractNVUValidatorMojo {
+
+  NVUWatchMojo(final FileSystem fileSystem) {
+    super(fileSystem);
+  }
+
+  public NVUWatchMojo() {
+    super();
+  }
+
+  @Override
+  public final void execute() throws MojoFailureException {
+    final NVUValidator nvuValidator = createValidator();
+    try {
+      nvuValidator.validate();
+    } catch (MojoFailureException ex) {
+      getLog().error(ex.getMessage());
+    }
+    nvuValidator.watch();
+  }
+
+  /**
+   * Watching all files, failing fast, validating a shard or only validating
+   * files changed in git makes no sense. The validators stay set up in the
+   * watching JVM anyway, so there is no need for the daemon either.
+   */
+  @Override
+  final void configure(final NVUValidatorConfiguration configuration) {
+    configuration.setFailfast(false);
+    configuration.setChangedSince(null);
+    configuration.setShard(null);
+    configuration.setDaemon(false);
+  }
+}
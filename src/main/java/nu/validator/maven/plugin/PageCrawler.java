@@ -0,0 +1,533 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import nu.validator.maven.plugin.configuration.FileSetCfg;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.maven.plugin.logging.Log;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * The pages of a fileset served by a web server, e.g. a local server started
+ * in pre-integration-test. Pages are fetched by a pool of threads, starting
+ * with the pages of a sitemap or following the links from the base URL, and
+ * are handed out for validation as soon as they arrive.
+ *
+ * Pages are named by their URL. Only pages below the base URL are fetched,
+ * and only pages with a content type to be validated are handed out.
+ *
+ * @author Nicolai Ehemann
+ */
+final class PageCrawler implements DocumentSource {
+
+  private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+
+  private static final int READ_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(60);
+
+  /**
+   * Initial buffer size for responses of unknown size
+   */
+  private static final int UNKNOWN_SIZE = 8192;
+
+  /**
+   * Fetched pages waiting to be validated, per fetching thread
+   */
+  private static final int QUEUED_PAGES_PER_THREAD = 4;
+
+  /**
+   * Links to other pages, the group is the link in double, single or no quotes
+   */
+  private static final Pattern LINK = Pattern.compile(
+      "<(?:a|area|link)\\s[^>]*?\\bhref\\s*=\\s*(\"[^\"]*\"|'[^']*'|[^\\s>\"']+)", Pattern.CASE_INSENSITIVE);
+
+  private static final Pattern CHARSET = Pattern.compile(";\\s*charset=\"?([^\";\\s]+)", Pattern.CASE_INSENSITIVE);
+
+  private static final Map<String, DocumentType> MEDIA_TYPES = new HashMap<>();
+
+  static {
+    MEDIA_TYPES.put("text/html", DocumentType.HTML);
+    MEDIA_TYPES.put("text/css", DocumentType.CSS);
+    MEDIA_TYPES.put("image/svg+xml", DocumentType.SVG);
+    MEDIA_TYPES.put("application/xhtml+xml", DocumentType.XHTML);
+  }
+
+  private final URI base;
+
+  /**
+   * The path of the base URL, ending with a slash
+   */
+  private final String basePath;
+
+  private final String sitemap;
+
+  private final int maxPages;
+
+  private final int maxDepth;
+
+  private final FileDiscovery discovery;
+
+  private final Log log;
+
+  private final ExecutorService executor;
+
+  /**
+   * Pages fetched, or failed to fetch, in the order they arrived; empty once all pages are fetched
+   */
+  private final BlockingQueue<Optional<Page>> arrived;
+
+  /**
+   * Content of pages handed out, until read
+   */
+  private final Map<String, Page> fetched = new ConcurrentHashMap<>();
+
+  private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+  private final AtomicInteger scheduled = new AtomicInteger();
+
+  /**
+   * Pages scheduled and not fetched yet, plus one while the first pages are scheduled
+   */
+  private final AtomicInteger running = new AtomicInteger();
+
+  /**
+   * @param discovery matches the pages, by their path relative to the base URL resolved against the discovery's directory
+   * @param threads number of pages fetched at once
+   */
+  PageCrawler(final FileSetCfg fileset, final FileDiscovery discovery, final int threads, final Log log) {
+    final URI url = URI.create(fileset.getUrl());
+    this.base = url.getRawPath().isEmpty() ? url.resolve("/") : url;
+    this.basePath = base.getRawPath().endsWith("/") ? base.getRawPath() : base.getRawPath() + "/";
+    this.sitemap = fileset.getSitemap();
+    this.maxPages = fileset.getMaxPages();
+    this.maxDepth = fileset.getMaxDepth();
+    this.discovery = discovery;
+    this.log = log;
+    this.arrived = new LinkedBlockingQueue<>(threads * QUEUED_PAGES_PER_THREAD);
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread = new Thread(runnable, "vnu-crawler-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @return whether the file is a page, named by its http or https URL
+   */
+  static boolean isPage(final String file) {
+    return file.startsWith("http://") || file.startsWith("https://");
+  }
+
+  /**
+   * Starts crawling. With a sitemap, the pages it lists are fetched without
+   * following their links, otherwise links are followed from the base URL.
+   * Closing the stream stops crawling.
+   *
+   * @return the URLs of the pages to be validated, in the order they arrive
+   * @throws IOException if the sitemap can not be read
+   */
+  Stream<String> crawl() throws IOException {
+    // held while scheduling the first pages, so the pages fetched meanwhile do not end the crawl
+    running.incrementAndGet();
+    if (sitemap != null) {
+      for (URI page : readSitemap(base.resolve(sitemap), new HashSet<>())) {
+        schedule(page, maxDepth);
+      }
+    } else {
+      schedule(base, 0);
+    }
+    // released by a fetch thread, as only those wait for room to put the end of the pages
+    executor.execute(() -> {
+      try {
+        release();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    final Iterator<String> iterator = new Iterator<String>() {
+      private Optional<Page> next;
+
+      @Override
+      public boolean hasNext() {
+        while (next == null) {
+          next = take();
+          if (next.isPresent() && !isToBeValidated(next.get())) {
+            next = null;
+          }
+        }
+        return next.isPresent();
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final Page page = next.get();
+        next = null;
+        fetched.put(page.url, page);
+        return page.url;
+      }
+    };
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(executor::shutdownNow);
+  }
+
+  private Optional<Page> take() {
+    try {
+      return arrived.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @return whether the page arrived is to be validated, failing if the base URL can not be fetched
+   */
+  private boolean isToBeValidated(final Page page) {
+    if (page.failure != null && page.url.equals(base.toString())) {
+      throw new UncheckedIOException(new IOException("Unable to fetch " + page.url + " (" + page.failure.getMessage() + ")",
+          page.failure));
+    }
+    if (page.failure != null) {
+      log.warn("Unable to fetch " + page.url + " (" + page.failure.getMessage() + ")");
+    } else if (page.documentType == null) {
+      log.debug("  Skipping page " + page.url + ", content type " + page.contentType + " is not validated");
+    }
+    final String relativePath = page.path.startsWith(basePath) ? page.path.substring(basePath.length()) : "";
+    final Path path = discovery.getDirectory().resolve(relativePath);
+    return page.documentType != null && (relativePath.isEmpty() || discovery.isPartOfFileset(path));
+  }
+
+  /**
+   * Fetches a page in the background, unless it was fetched before or the maximum number of pages is reached
+   *
+   * @param depth number of links followed from the base URL to the page
+   */
+  private void schedule(final URI page, final int depth) {
+    if (seen.add(page.toString())) {
+      final int number = scheduled.incrementAndGet();
+      if (number <= maxPages) {
+        running.incrementAndGet();
+        executor.execute(() -> fetch(page, depth));
+      } else if (number == maxPages + 1) {
+        log.warn(String.format("Stopped crawling %s after %d pages (maxPages)", base, maxPages));
+      }
+    }
+  }
+
+  private void fetch(final URI url, final int depth) {
+    try {
+      Page page;
+      try {
+        page = download(url);
+        if (depth < maxDepth && (page.documentType == DocumentType.HTML || page.documentType == DocumentType.XHTML)) {
+          for (URI link : findLinks(page)) {
+            schedule(link, depth + 1);
+          }
+        }
+      } catch (IOException ex) {
+        page = new Page(url, ex);
+      } catch (IllegalArgumentException ex) {
+        page = new Page(url, new IOException(ex.getMessage(), ex));
+      }
+      arrived.put(Optional.of(page));
+      release();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Ends the pages once the last fetch is done
+   */
+  private void release() throws InterruptedException {
+    if (running.decrementAndGet() == 0) {
+      arrived.put(Optional.empty());
+    }
+  }
+
+  private static Page download(final URI url) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) url.toURL().openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+    connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+    final int status = connection.getResponseCode();
+    if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+      connection.disconnect();
+      throw new IOException("HTTP status " + status);
+    }
+    final int length = connection.getContentLength();
+    try (InputStream in = connection.getInputStream()) {
+      final ByteBuffer content = FilePrefetcher.readFully(Channels.newChannel(in), length >= 0 ? length : UNKNOWN_SIZE);
+      return new Page(url, connection.getURL().toString(), connection.getContentType(), content);
+    }
+  }
+
+  /**
+   * @return the links of an HTML page to pages below the base URL, without fragment
+   */
+  private List<URI> findLinks(final Page page) {
+    final List<URI> links = new ArrayList<>();
+    final Matcher matcher = LINK.matcher(page.getCharset().decode(page.content.duplicate()));
+    while (matcher.find()) {
+      String href = matcher.group(1);
+      if (href.startsWith("\"") || href.startsWith("'")) {
+        href = href.substring(1, href.length() - 1);
+      }
+      final URI link = toPageUri(page.location, href.trim().replace("&amp;", "&"));
+      if (link != null) {
+        links.add(link);
+      }
+    }
+    return links;
+  }
+
+  /**
+   * @return the URL of the link without fragment, null if it is no valid URL below the base URL
+   */
+  private URI toPageUri(final URI location, final String href) {
+    URI page = null;
+    try {
+      final URI link = location.resolve(new URI(href));
+      if (link.getRawPath() != null && isBelowBase(link)) {
+        page = new URI(link.getScheme(), link.getRawAuthority(), link.getPath(), link.getQuery(), null);
+      }
+    } catch (URISyntaxException | IllegalArgumentException ex) {
+      log.debug("  Skipping link " + href + " of " + location + " (" + ex.getMessage() + ")");
+    }
+    return page;
+  }
+
+  private boolean isBelowBase(final URI link) {
+    return base.getScheme().equalsIgnoreCase(link.getScheme()) && base.getRawAuthority().equalsIgnoreCase(link.getRawAuthority())
+        && (link.getRawPath().equals(base.getRawPath()) || link.getRawPath().startsWith(basePath));
+  }
+
+  /**
+   * @param sitemaps sitemaps read before, to read every sitemap of a sitemap index once
+   * @return the pages listed in the sitemap and, for a sitemap index, its sitemaps
+   */
+  private List<URI> readSitemap(final URI url, final Set<URI> sitemaps) throws IOException {
+    final Page page = download(url);
+    final SitemapHandler handler = new SitemapHandler();
+    try {
+      final SAXParserFactory factory = SAXParserFactory.newInstance();
+      factory.setNamespaceAware(true);
+      factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+      factory.newSAXParser().parse(new ByteBufferInputStream(page.content), handler);
+    } catch (ParserConfigurationException | SAXException ex) {
+      throw new IOException("Unable to read sitemap " + url + " (" + ex.getMessage() + ")", ex);
+    }
+    final List<URI> pages = new ArrayList<>();
+    for (String location : handler.pages) {
+      final URI pageUri = toPageUri(page.location, location);
+      if (pageUri != null) {
+        pages.add(pageUri);
+      }
+    }
+    for (String location : handler.sitemaps) {
+      final URI sitemapUri = page.location.resolve(location);
+      if (sitemaps.add(sitemapUri)) {
+        pages.addAll(readSitemap(sitemapUri, sitemaps));
+      }
+    }
+    return pages;
+  }
+
+  /**
+   * Reads the content of a page handed out by {@link #crawl()}, once
+   */
+  @Override
+  public ByteBuffer read(final String file) throws IOException {
+    final Page page = fetched.remove(file);
+    if (page == null) {
+      throw new FileNotFoundException(file);
+    }
+    return page.content;
+  }
+
+  @Override
+  public String getSystemId(final String file) {
+    return file;
+  }
+
+  /**
+   * @return the document type of a page handed out by {@link #crawl()}, by its content type
+   */
+  @Override
+  public DocumentType getDocumentType(final String file) {
+    final Page page = fetched.get(file);
+    return page != null ? page.documentType : null;
+  }
+
+  /**
+   * Stops crawling
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * A page fetched, or failed to be fetched
+   */
+  private static final class Page {
+
+    private final String url;
+
+    /**
+     * The raw path of the URL
+     */
+    private final String path;
+
+    /**
+     * The URL the page was fetched from, after redirects
+     */
+    private final URI location;
+
+    private final String contentType;
+
+    private final DocumentType documentType;
+
+    private final ByteBuffer content;
+
+    private final IOException failure;
+
+    private Page(final URI url, final String location, final String contentType, final ByteBuffer content) {
+      this.url = url.toString();
+      this.path = url.getRawPath();
+      this.location = URI.create(location);
+      this.contentType = contentType;
+      this.documentType = contentType != null
+          ? MEDIA_TYPES.get(contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT)) : null;
+      this.content = content;
+      this.failure = null;
+    }
+
+    private Page(final URI url, final IOException failure) {
+      this.url = url.toString();
+      this.path = url.getRawPath();
+      this.location = url;
+      this.contentType = null;
+      this.documentType = null;
+      this.content = null;
+      this.failure = failure;
+    }
+
+    private Charset getCharset() {
+      final Matcher charset = contentType != null ? CHARSET.matcher(contentType) : null;
+      Charset result = StandardCharsets.UTF_8;
+      if (charset != null && charset.find() && Charset.isSupported(charset.group(1))) {
+        result = Charset.forName(charset.group(1));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Collects the locations of a sitemap or sitemap index
+   */
+  private static final class SitemapHandler extends DefaultHandler {
+
+    private final List<String> pages = new ArrayList<>();
+
+    private final List<String> sitemaps = new ArrayList<>();
+
+    /**
+     * Whether inside a sitemap element of a sitemap index
+     */
+    private boolean inSitemap;
+
+    /**
+     * Text of the current loc element, null outside of loc elements
+     */
+    private StringBuilder location;
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+      if ("sitemap".equals(localName)) {
+        inSitemap = true;
+      } else if ("loc".equals(localName)) {
+        location = new StringBuilder();
+      }
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) {
+      if (location != null) {
+        location.append(ch, start, length);
+      }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) {
+      if ("sitemap".equals(localName)) {
+        inSitemap = false;
+      } else if ("loc".equals(localName)) {
+        (inSitemap ? sitemaps : pages).add(location.toString().trim());
+        location = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a SARIF 2.1.0 log with a result per message. The results are
+ * streamed into the log as files are validated, the log is completed when
+ * the reporter is closed.
+ *
+ * @author Nicolai Ehemann
+ */
+class SarifReporter implements ValidationReporter {
+
+  private static final String SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+
+  /**
+   * Base of the message paths, which are relative to the project's base directory
+   */
+  private static final String BASE_ID = "PROJECTROOT";
+
+  private final JsonWriter json;
+
+  /**
+   * @param reportFile the file to write, replaced if it exists
+   * @param basedir the project's base directory
+   * @param version the version of v.Nu
+   * @throws IOException if the file can not be created
+   */
+  SarifReporter(final Path reportFile, final Path basedir, final String version) throws IOException {
+    Files.createDirectories(reportFile.getParent());
+    this.json = new JsonWriter(Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8));
+    json.beginObject()
+        .name("$schema").value(SCHEMA)
+        .name("version").value("2.1.0")
+        .name("runs").beginArray().beginObject();
+    json.name("tool").beginObject().name("driver").beginObject()
+        .name("name").value("Nu Html Checker (v.Nu)")
+        .name("version").value(version)
+        .name("informationUri").value("https://validator.github.io/")
+        .endObject().endObject();
+    json.name("originalUriBaseIds").beginObject()
+        .name(BASE_ID).beginObject().name("uri").value(basedir.toUri().toString()).endObject()
+        .endObject();
+    json.name("results").beginArray();
+  }
+
+  @Override
+  public void report(final FileValidationResult result) {
+    try {
+      for (ValidationError message : result.getMessages()) {
+        json.beginObject()
+            .name("level").value(result.isError(message) ? "error" : "warning")
+            .name("message").beginObject().name("text").value(message.getMessage()).endObject();
+        json.name("locations").beginArray().beginObject().name("physicalLocation").beginObject();
+        json.name("artifactLocation").beginObject().name("uri").value(message.getPath().replace('\\', '/'));
+        // pages are named by their absolute URL
+        if (!PageCrawler.isPage(message.getPath())) {
+          json.name("uriBaseId").value(BASE_ID);
+        }
+        json.endObject();
+        if (message.getLine() > 0) {
+          json.name("region").beginObject().name("startLine").value(message.getLine());
+          if (message.getColumn() > 0) {
+            json.name("startColumn").value(message.getColumn());
+          }
+          json.endObject();
+        }
+        json.endObject().endObject().endArray();
+        json.endObject();
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      json.endArray().endObject().endArray().endObject().newLine();
+    } finally {
+      json.close();
+    }
+  }
+}
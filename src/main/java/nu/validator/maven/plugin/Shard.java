@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.MojoInvalidConfigurationException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One of several parts the files are split into, to be validated on
+ * different machines. Files are assigned to shards by the hash of their path
+ * relative to the project's base directory, so every machine assigns them
+ * the same way, and adding or removing a file does not move other files.
+ *
+ * @author Nicolai Ehemann
+ */
+final class Shard {
+
+  private static final Pattern SHARD = Pattern.compile("\\s*(\\d+)\\s*/\\s*(\\d+)\\s*");
+
+  /**
+   * Number of the shard, starting at 1
+   */
+  private final int index;
+
+  private final int count;
+
+  Shard(final int index, final int count) {
+    this.index = index;
+    this.count = count;
+  }
+
+  /**
+   * @param shard the shard like "3/8", for the third of eight shards
+   * @return the shard
+   * @throws MojoInvalidConfigurationException if the shard is malformed
+   */
+  static Shard parse(final String shard) throws MojoInvalidConfigurationException {
+    final Matcher matcher = SHARD.matcher(shard);
+    if (!matcher.matches()) {
+      throw new MojoInvalidConfigurationException("<shard> must be given like 3/8, not " + shard);
+    }
+    final int index = Integer.parseInt(matcher.group(1));
+    final int count = Integer.parseInt(matcher.group(2));
+    if (index < 1 || index > count) {
+      throw new MojoInvalidConfigurationException("<shard> must be between 1/" + count + " and " + count + "/" + count);
+    }
+    return new Shard(index, count);
+  }
+
+  /**
+   * @param relativePath the path of a file relative to the project's base directory
+   * @return whether the file is part of this shard
+   */
+  boolean contains(final String relativePath) {
+    return Math.floorMod(relativePath.replace('\\', '/').hashCode(), count) == index - 1;
+  }
+
+  int getIndex() {
+    return index;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  /**
+   * @return the name of the file the results of this shard are written to
+   */
+  String getResultFileName() {
+    return "shard-" + index + "-of-" + count + ".bin";
+  }
+
+  @Override
+  public String toString() {
+    return index + "/" + count;
+  }
+}
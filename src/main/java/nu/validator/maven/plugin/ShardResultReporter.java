@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Writes the results of a shard, to be merged with the results of the
+ * other shards by the merge goal. Files are stored by their path relative
+ * to the project's base directory, so shards may run in different
+ * directories. The file ends with a marker written once the shard is
+ * finished, so results of a shard that did not complete are detected.
+ *
+ * @author Nicolai Ehemann
+ */
+final class ShardResultReporter implements ValidationReporter {
+
+  private static final int FORMAT_VERSION = 2;
+
+  private final DataOutputStream out;
+
+  private final Path basedir;
+
+  /**
+   * @param resultFile the file to write, replaced if it exists
+   * @param basedir the project's base directory
+   * @param shard the shard validated
+   * @throws IOException if the file can not be created
+   */
+  ShardResultReporter(final Path resultFile, final Path basedir, final Shard shard) throws IOException {
+    Files.createDirectories(resultFile.getParent());
+    this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(resultFile)));
+    this.basedir = basedir;
+    out.writeInt(FORMAT_VERSION);
+    out.writeInt(shard.getIndex());
+    out.writeInt(shard.getCount());
+  }
+
+  @Override
+  public void report(final FileValidationResult result) {
+    try {
+      out.writeBoolean(true);
+      ValidationErrorCodec.writeString(out, basedir.relativize(basedir.resolve(result.getFile())).toString());
+      out.writeBoolean(result.isWarningsAsErrors());
+      ValidationErrorCodec.write(out, result.getMessages());
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void finish() throws IOException {
+    out.writeBoolean(false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  /**
+   * Reads the shard a result file was written for
+   *
+   * @return the shard
+   * @throws IOException if the file is no shard result file
+   */
+  static Shard readShard(final DataInputStream in) throws IOException {
+    if (in.readInt() != FORMAT_VERSION) {
+      throw new IOException("Unsupported shard result format");
+    }
+    final int index = in.readInt();
+    return new Shard(index, in.readInt());
+  }
+
+  /**
+   * Reads the results of a shard, following {@link #readShard}
+   *
+   * @param basedir the project's base directory, to resolve the files against
+   * @param results receives the results
+   * @throws IOException if the file can not be read or is incomplete
+   */
+  static void readResults(final DataInputStream in, final Path basedir, final Consumer<FileValidationResult> results)
+      throws IOException {
+    while (in.readBoolean()) {
+      final String file = basedir.resolve(ValidationErrorCodec.readString(in)).toString();
+      final boolean warningsAsErrors = in.readBoolean();
+      results.accept(new FileValidationResult(file, ValidationErrorCodec.read(in), warningsAsErrors));
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import nu.validator.localentities.LocalCacheEntityResolver;
+import nu.validator.validation.SimpleDocumentValidator;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A set up document validator, shared by all plugin executions of the JVM.
+ * Setting up the schema is expensive, so idle validators are kept in a pool
+ * and handed out to later filesets and modules (also in parallel builds).
+ *
+ * The document validator reports to this error handler, which forwards to
+ * the error handler of the current user.
+ *
+ * Schemas are only read from the resources bundled with v.Nu, they are never
+ * fetched from the network.
+ *
+ * @author Nicolai Ehemann
+ */
+final class SharedDocumentValidator implements ErrorHandler {
+
+  private static final boolean ENABLE_LANGUAGE_DETECTION = true;
+
+  private static final boolean NO_STREAM = false;
+
+  private static final boolean LOAD_EXTERNAL_ENTITIES = false;
+
+  /**
+   * Maximum number of idle validators kept per schema
+   */
+  private static final int MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Idle validators by schema URL and validator options
+   */
+  private static final ConcurrentMap<String, BlockingQueue<SharedDocumentValidator>> IDLE = new ConcurrentHashMap<>();
+
+  /**
+   * JVM wide system property v.Nu sets when setting up a schema and reads
+   * while checking documents: "1" for the HTML schema, "0" for the others
+   */
+  private static final String PROPERTY_RDFA_FULL = "nu.validator.schema.rdfa-full";
+
+  /**
+   * Checks currently relying on the property
+   */
+  private static final RdfaFullChecks RDFA_FULL_CHECKS = new RdfaFullChecks();
+
+  private final String key;
+
+  private final SimpleDocumentValidator documentValidator;
+
+  private volatile ErrorHandler errorHandler;
+
+  /**
+   * @throws ValidatorSetupException if the schema can not be set up
+   */
+  private SharedDocumentValidator(final String key, final String schemaUrl) {
+    this.key = key;
+    this.documentValidator = new SimpleDocumentValidator(true, false, ENABLE_LANGUAGE_DETECTION);
+    try {
+      checkBundled(schemaUrl);
+      documentValidator.setUpMainSchema(schemaUrl, this);
+      documentValidator.setUpValidatorAndParsers(this, NO_STREAM, LOAD_EXTERNAL_ENTITIES);
+    } catch (Exception ex) {
+      throw new ValidatorSetupException("Unable to set up validator for schema " + schemaUrl + " (" + ex.getMessage() + ")", ex);
+    }
+  }
+
+  /**
+   * Makes sure the schema is bundled with v.Nu. Otherwise, v.Nu would fail with
+   * an obscure error when setting up the schema.
+   *
+   * @throws SAXException if the schema is not bundled
+   */
+  private static void checkBundled(final String schemaUrl) throws SAXException, IOException {
+    final LocalCacheEntityResolver resolver = new LocalCacheEntityResolver((publicId, systemId) -> {
+      throw new SAXException("Schema " + systemId + " is not bundled with v.Nu " + getVersion()
+          + ", it is not fetched from the network");
+    });
+    resolver.setAllowRnc(true);
+    final InputSource schema = resolver.resolveEntity(null, schemaUrl);
+    schema.getByteStream().close();
+  }
+
+  private static String getVersion() {
+    return SimpleDocumentValidator.class.getPackage().getImplementationVersion();
+  }
+
+  /**
+   * Takes an idle validator for the schema from the pool, or sets up a new one.
+   *
+   * @param schemaUrl the main schema to validate with
+   * @param errorHandler the error handler to report to until the validator is released
+   * @return a validator for exclusive use by the caller
+   * @throws ValidatorSetupException if a new validator can not be set up
+   */
+  static SharedDocumentValidator acquire(final String schemaUrl, final ErrorHandler errorHandler) {
+    final String key = schemaUrl
+        + ";enableLanguageDetection=" + ENABLE_LANGUAGE_DETECTION
+        + ";noStream=" + NO_STREAM
+        + ";loadExternalEntities=" + LOAD_EXTERNAL_ENTITIES;
+    SharedDocumentValidator validator = getIdle(key).poll();
+    if (validator == null) {
+      // setting up the schema changes the property
+      RDFA_FULL_CHECKS.begin(null);
+      try {
+        validator = new SharedDocumentValidator(key, schemaUrl);
+      } finally {
+        RDFA_FULL_CHECKS.end(null);
+      }
+    }
+    validator.errorHandler = errorHandler;
+    return validator;
+  }
+
+  /**
+   * Prepares the system properties v.Nu reads for a check with the schema,
+   * waiting for checks needing other values to finish. Validators must be
+   * acquired before, and the check must be ended with {@link #endCheck}.
+   *
+   * @param schemaUrl the main schema of the check
+   */
+  static void beginCheck(final String schemaUrl) {
+    RDFA_FULL_CHECKS.begin(getRdfaFull(schemaUrl));
+  }
+
+  /**
+   * Ends a check begun with {@link #beginCheck}
+   *
+   * @param schemaUrl the main schema of the check
+   */
+  static void endCheck(final String schemaUrl) {
+    RDFA_FULL_CHECKS.end(getRdfaFull(schemaUrl));
+  }
+
+  private static String getRdfaFull(final String schemaUrl) {
+    return NVUValidator.SCHEMA_URL_HTML.equals(schemaUrl) ? "1" : "0";
+  }
+
+  private static BlockingQueue<SharedDocumentValidator> getIdle(final String key) {
+    return IDLE.computeIfAbsent(key, k -> new LinkedBlockingQueue<>(MAX_IDLE));
+  }
+
+  /**
+   * Returns the validator to the pool. It must not be used by the caller afterwards.
+   */
+  void release() {
+    this.errorHandler = null;
+    getIdle(key).offer(this);
+  }
+
+  SimpleDocumentValidator getDocumentValidator() {
+    return documentValidator;
+  }
+
+  @Override
+  public void warning(final SAXParseException exception) throws SAXException {
+    if (errorHandler != null) {
+      errorHandler.warning(exception);
+    }
+  }
+
+  @Override
+  public void error(final SAXParseException exception) throws SAXException {
+    if (errorHandler != null) {
+      errorHandler.error(exception);
+    }
+  }
+
+  @Override
+  public void fatalError(final SAXParseException exception) throws SAXException {
+    if (errorHandler != null) {
+      errorHandler.fatalError(exception);
+    }
+  }
+
+  /**
+   * Checks relying on the rdfa-full property. Checks needing the value it
+   * is set to run in parallel, the value is only changed once no check
+   * relies on it anymore. So SVG and XHTML checks only wait while HTML is
+   * checked at the same time, and vice versa. Checks needing the current
+   * value wait as well while others wait for a change, so neither starves.
+   * Setting up a schema (value null) runs exclusively.
+   */
+  private static final class RdfaFullChecks {
+
+    /**
+     * The value the property is set to, null if not set yet
+     */
+    private String value;
+
+    private int checks;
+
+    private boolean exclusive;
+
+    /**
+     * Waiting checks by the value they need
+     */
+    private final Map<String, Integer> waiting = new HashMap<>();
+
+    /**
+     * Waits until no check needs another value, then sets the property to the value
+     *
+     * @param required the value of the property the check needs, null to run exclusively
+     */
+    synchronized void begin(final String required) {
+      boolean interrupted = false;
+      waiting.merge(required, 1, Integer::sum);
+      while (!mayBegin(required)) {
+        try {
+          wait();
+        } catch (InterruptedException ex) {
+          // the check is started nonetheless, so its caller sees the interrupt when checking
+          interrupted = true;
+        }
+      }
+      waiting.merge(required, -1, Integer::sum);
+      if (required == null) {
+        exclusive = true;
+      } else {
+        if (!required.equals(value)) {
+          System.setProperty(PROPERTY_RDFA_FULL, required);
+          value = required;
+        }
+        checks++;
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * @param required the value passed to {@link #begin}
+     */
+    synchronized void end(final String required) {
+      if (required == null) {
+        exclusive = false;
+        // setting up the schema changed the property
+        if (value != null) {
+          System.setProperty(PROPERTY_RDFA_FULL, value);
+        }
+      } else {
+        checks--;
+      }
+      notifyAll();
+    }
+
+    private boolean mayBegin(final String required) {
+      boolean othersWaiting = false;
+      for (Map.Entry<String, Integer> entry : waiting.entrySet()) {
+        othersWaiting |= !Objects.equals(entry.getKey(), required) && entry.getValue() > 0;
+      }
+      return !exclusive && (checks == 0 || required != null && required.equals(value) && !othersWaiting);
+    }
+  }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Validation results of previous runs, stored per file together with the
+ * file's size, modification time and content hash. The results are stored
+ * unfiltered, so changing the filters does not invalidate the cache.
+ *
+ * @author Nicolai Ehemann
+ */
+class ValidationCache {
+
+  private static final int FORMAT_VERSION = 3;
+
+  private static final int BUFFER_SIZE = 65536;
+
+  private final Path cacheFile;
+
+  /**
+   * Identifies everything besides the file content the results depend on
+   */
+  private final String key;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  ValidationCache(final Path cacheFile, final String key) {
+    this.cacheFile = cacheFile;
+    this.key = key;
+  }
+
+  /**
+   * Reads the results stored by a previous run. The cache stays empty if the
+   * cache file does not exist or was written with a different key.
+   *
+   * @throws IOException if the cache file can not be read
+   */
+  void load() throws IOException {
+    if (Files.isRegularFile(cacheFile)) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+        if (in.readInt() == FORMAT_VERSION && key.equals(ValidationErrorCodec.readString(in))) {
+          readEntries(in);
+        }
+      }
+    }
+  }
+
+  private void readEntries(final DataInputStream in) throws IOException {
+    final int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      final String file = ValidationErrorCodec.readString(in);
+      final long size = in.readLong();
+      final long lastModified = in.readLong();
+      entries.put(file, new Entry(size, lastModified, ValidationErrorCodec.readBytes(in), ValidationErrorCodec.readBytes(in)));
+    }
+  }
+
+  /**
+   * Writes the results of all files that still exist to the cache file.
+   *
+   * @throws IOException if the cache file can not be written
+   */
+  void save() throws IOException {
+    Files.createDirectories(cacheFile.getParent());
+    final Path tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(FORMAT_VERSION);
+        ValidationErrorCodec.writeString(out, key);
+        final List<Map.Entry<String, Entry>> existing = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+          if (Files.exists(Paths.get(entry.getKey()))) {
+            existing.add(entry);
+          }
+        }
+        out.writeInt(existing.size());
+        for (Map.Entry<String, Entry> entry : existing) {
+          ValidationErrorCodec.writeString(out, entry.getKey());
+          writeEntry(out, entry.getValue());
+        }
+      }
+      Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * @param file the file to be validated
+   * @return whether the size and modification time of the file match its cached state
+   */
+  boolean isUnchanged(final Path file) {
+    final Entry entry = entries.get(file.toAbsolutePath().normalize().toString());
+    boolean unchanged = false;
+    if (entry != null) {
+      try {
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        unchanged = entry.size == attributes.size() && entry.lastModified == attributes.lastModifiedTime().toMillis();
+      } catch (IOException ex) {
+        unchanged = false;
+      }
+    }
+    return unchanged;
+  }
+
+  /**
+   * Determines the current state of a file. The content hash is only computed
+   * if the size and modification time do not match the cached state.
+   *
+   * @param file the file to be validated
+   * @param content the content of the file if already read, null to read it if needed
+   * @return the state of the file, to be passed to {@link #get} and {@link #put}
+   * @throws IOException if the file can not be read
+   */
+  Fingerprint fingerprint(final Path file, final ByteBuffer content) throws IOException {
+    final String name = file.toAbsolutePath().normalize().toString();
+    final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    final Fingerprint fingerprint = new Fingerprint(name, attributes.size(), attributes.lastModifiedTime().toMillis());
+    final Entry entry = entries.get(name);
+    if (entry == null || entry.size != fingerprint.size || entry.lastModified != fingerprint.lastModified) {
+      fingerprint.hash = content != null ? hash(content.duplicate()) : hash(file);
+    }
+    return fingerprint;
+  }
+
+  /**
+   * @param fingerprint the current state of the file
+   * @return the cached validation errors, or null if the file changed
+   */
+  List<ValidationError> get(final Fingerprint fingerprint) throws IOException {
+    final Entry entry = entries.get(fingerprint.file);
+    List<ValidationError> errors = null;
+    if (entry != null && fingerprint.hash == null) {
+      errors = decode(entry.errors);
+    } else if (entry != null && Arrays.equals(entry.hash, fingerprint.hash)) {
+      entries.put(fingerprint.file, new Entry(fingerprint.size, fingerprint.lastModified, entry.hash, entry.errors));
+      errors = decode(entry.errors);
+    }
+    return errors;
+  }
+
+  /**
+   * @param fingerprint the state of the file before it was validated
+   * @param errors the (unfiltered) validation errors of the file
+   */
+  void put(final Fingerprint fingerprint, final List<ValidationError> errors) {
+    entries.put(fingerprint.file, new Entry(fingerprint.size, fingerprint.lastModified, fingerprint.hash, encode(errors)));
+  }
+
+  /**
+   * @param content the content to hash, which is consumed
+   * @return the SHA-256 hash of the content
+   */
+  static byte[] hash(final ByteBuffer content) {
+    final MessageDigest digest = createDigest();
+    digest.update(content);
+    return digest.digest();
+  }
+
+  private static byte[] hash(final Path file) throws IOException {
+    final MessageDigest digest = createDigest();
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = Files.newInputStream(file)) {
+      int read = in.read(buffer);
+      while (read >= 0) {
+        digest.update(buffer, 0, read);
+        read = in.read(buffer);
+      }
+    } catch (NoSuchFileException ex) {
+      throw new FileNotFoundException(file.toString());
+    }
+    return digest.digest();
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static void writeEntry(final DataOutputStream out, final Entry entry) throws IOException {
+    out.writeLong(entry.size);
+    out.writeLong(entry.lastModified);
+    ValidationErrorCodec.writeBytes(out, entry.hash);
+    ValidationErrorCodec.writeBytes(out, entry.errors);
+  }
+
+  /**
+   * Encodes validation errors compactly, so cached results take up little memory
+   */
+  private static byte[] encode(final List<ValidationError> errors) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      ValidationErrorCodec.write(out, errors);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static List<ValidationError> decode(final byte[] encoded) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+      return ValidationErrorCodec.read(in);
+    }
+  }
+
+  /**
+   * State of a file at the time it is validated
+   */
+  static final class Fingerprint {
+
+    private final String file;
+
+    private final long size;
+
+    private final long lastModified;
+
+    private byte[] hash;
+
+    private Fingerprint(final String file, final long size, final long lastModified) {
+      this.file = file;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /**
+   * Cached validation result of a file
+   */
+  private static final class Entry {
+
+    private final long size;
+
+    private final long lastModified;
+
+    private final byte[] hash;
+
+    /**
+     * Encoded validation errors
+     */
+    private final byte[] errors;
+
+    private Entry(final long size, final long lastModified, final byte[] hash, final byte[] errors) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+      this.errors = errors;
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background JVM validating files for maven builds, so repeated builds skip
+ * loading v.Nu and setting up the schemas. The daemon listens on a loopback
+ * port, which is announced in a registry file together with a secret token
+ * clients have to present. It exits after being idle for a while.
+ *
+ * @see DaemonClient
+ * @author Nicolai Ehemann
+ */
+final class ValidationDaemon {
+
+  static final String PROPERTY_PORT = "port";
+
+  static final String PROPERTY_TOKEN = "token";
+
+  static final byte STATUS_OK = 0;
+
+  static final byte STATUS_FILE_NOT_FOUND = 1;
+
+  static final byte STATUS_READ_ERROR = 2;
+
+  private static final int TOKEN_BYTES = 32;
+
+  /**
+   * Interval to check for the idle timeout in
+   */
+  private static final int ACCEPT_TIMEOUT_MILLIS = 10000;
+
+  private final ServerSocket serverSocket;
+
+  private final Path registryFile;
+
+  /**
+   * Identifies the plugin version and environment, clients with a different key are rejected
+   */
+  private final String key;
+
+  private final String token;
+
+  private final long idleTimeoutMillis;
+
+  private final AtomicInteger connections = new AtomicInteger();
+
+  private volatile long lastActivity = System.currentTimeMillis();
+
+  private ValidationDaemon(final Path registryFile, final String key, final long idleTimeoutMillis) throws IOException {
+    this.serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+    this.serverSocket.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+    this.registryFile = registryFile;
+    this.key = key;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    final byte[] tokenBytes = new byte[TOKEN_BYTES];
+    new SecureRandom().nextBytes(tokenBytes);
+    final StringBuilder tokenBuilder = new StringBuilder();
+    for (byte b : tokenBytes) {
+      tokenBuilder.append(String.format("%02x", b));
+    }
+    this.token = tokenBuilder.toString();
+  }
+
+  /**
+   * @param args the registry file, the key and the idle timeout in milliseconds
+   * @throws IOException if the daemon can not listen or announce itself
+   */
+  public static void main(final String[] args) throws IOException {
+    new ValidationDaemon(Paths.get(args[0]), args[1], Long.parseLong(args[2])).run();
+    System.exit(0);
+  }
+
+  private void run() throws IOException {
+    final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+      final Thread thread = new Thread(runnable, "vnu-daemon-connection");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      writeRegistry();
+      System.out.println("Validation daemon listening on port " + serverSocket.getLocalPort());
+      while (!isIdle()) {
+        try {
+          final Socket socket = serverSocket.accept();
+          connections.incrementAndGet();
+          executor.execute(() -> serve(socket));
+        } catch (SocketTimeoutException ex) {
+          // check for the idle timeout
+        }
+      }
+      System.out.println("Validation daemon stopping after being idle");
+    } finally {
+      deleteRegistry();
+      serverSocket.close();
+      executor.shutdownNow();
+    }
+  }
+
+  private boolean isIdle() {
+    return connections.get() == 0 && System.currentTimeMillis() - lastActivity > idleTimeoutMillis;
+  }
+
+  /**
+   * Announces port and token, readable by the current user only
+   */
+  private void writeRegistry() throws IOException {
+    final Path tempFile = Files.createTempFile(registryFile.getParent(), registryFile.getFileName().toString(), ".tmp");
+    try {
+      if (Files.getFileStore(tempFile).supportsFileAttributeView("posix")) {
+        Files.setPosixFilePermissions(tempFile, PosixFilePermissions.fromString("rw-------"));
+      }
+      final Properties registry = new Properties();
+      registry.setProperty(PROPERTY_PORT, Integer.toString(serverSocket.getLocalPort()));
+      registry.setProperty(PROPERTY_TOKEN, token);
+      try (OutputStream out = Files.newOutputStream(tempFile)) {
+        registry.store(out, "vnu validation daemon");
+      }
+      Files.move(tempFile, registryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * Deletes the registry file, unless another daemon replaced it in the meantime
+   */
+  private void deleteRegistry() throws IOException {
+    if (Files.isRegularFile(registryFile)) {
+      final Properties registry = new Properties();
+      try (InputStream in = Files.newInputStream(registryFile)) {
+        registry.load(in);
+      }
+      if (token.equals(registry.getProperty(PROPERTY_TOKEN))) {
+        Files.deleteIfExists(registryFile);
+      }
+    }
+  }
+
+  /**
+   * Validates files for a client until it disconnects. The client first
+   * presents token and key, along with the settings for its validations.
+   */
+  private void serve(final Socket socket) {
+    try (Socket clientSocket = socket;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()))) {
+      final String clientToken = in.readUTF();
+      final String clientKey = in.readUTF();
+      final boolean accepted = token.equals(clientToken) && key.equals(clientKey);
+      final boolean asciiQuotes = in.readBoolean();
+      final File basedir = new File(in.readUTF());
+      out.writeBoolean(accepted);
+      out.flush();
+      if (accepted) {
+        final ValidationWorker worker = new ValidationWorker(asciiQuotes, basedir, () -> false);
+        try {
+          serveRequests(worker, in, out);
+        } finally {
+          worker.release();
+        }
+      }
+    } catch (IOException ex) {
+      // the client disconnected
+    } finally {
+      lastActivity = System.currentTimeMillis();
+      connections.decrementAndGet();
+    }
+  }
+
+  private void serveRequests(final ValidationWorker worker, final DataInputStream in, final DataOutputStream out) throws IOException {
+    while (!Thread.currentThread().isInterrupted()) {
+      final File file = new File(in.readUTF());
+      final DocumentType documentType = DocumentType.values()[in.readByte()];
+      lastActivity = System.currentTimeMillis();
+      byte status = STATUS_OK;
+      List<ValidationError> errors = Collections.emptyList();
+      try {
+        errors = worker.validate(file, documentType);
+      } catch (FileNotFoundException ex) {
+        status = STATUS_FILE_NOT_FOUND;
+      } catch (IOException ex) {
+        status = STATUS_READ_ERROR;
+      }
+      out.writeByte(status);
+      ValidationErrorCodec.write(out, errors);
+      out.flush();
+    }
+  }
+}
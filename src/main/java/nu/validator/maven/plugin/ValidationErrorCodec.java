@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of validation errors, as used by the validation cache and
+ * the validation daemon.
+ *
+ * @author Nicolai Ehemann
+ */
+final class ValidationErrorCodec {
+
+  private ValidationErrorCodec() {
+  }
+
+  /**
+   * Writes the errors of a file. Each distinct path and message is written
+   * once, later occurrences refer to it by number.
+   */
+  static void write(final DataOutputStream out, final List<ValidationError> errors) throws IOException {
+    final Map<String, Integer> strings = new HashMap<>();
+    out.writeInt(errors.size());
+    for (ValidationError error : errors) {
+      out.writeByte(error.getType().ordinal());
+      writeReference(out, strings, error.getPath());
+      out.writeInt(error.getLine());
+      out.writeInt(error.getColumn());
+      writeReference(out, strings, error.getMessage());
+    }
+  }
+
+  /**
+   * Reads the errors of a file, with canonical instances of the messages
+   */
+  static List<ValidationError> read(final DataInputStream in) throws IOException {
+    final int count = in.readInt();
+    final List<String> strings = new ArrayList<>();
+    final ValidationErrorList errors = new ValidationErrorList(count);
+    for (int i = 0; i < count; i++) {
+      final ValidationError.Type type = ValidationError.Type.values()[in.readByte()];
+      final String path = readReference(in, strings);
+      final int line = in.readInt();
+      final int column = in.readInt();
+      errors.add(type, path, line, column, MessageTable.intern(readReference(in, strings)));
+    }
+    return errors;
+  }
+
+  private static void writeReference(final DataOutputStream out, final Map<String, Integer> strings, final String string)
+      throws IOException {
+    final Integer number = strings.get(string);
+    if (number == null) {
+      out.writeInt(strings.size());
+      writeString(out, string);
+      strings.put(string, strings.size());
+    } else {
+      out.writeInt(number);
+    }
+  }
+
+  private static String readReference(final DataInputStream in, final List<String> strings) throws IOException {
+    final int number = in.readInt();
+    if (number == strings.size()) {
+      strings.add(readString(in));
+    }
+    return strings.get(number);
+  }
+
+  static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static byte[] readBytes(final DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  static void writeString(final DataOutputStream out, final String string) throws IOException {
+    writeBytes(out, String.valueOf(string).getBytes(StandardCharsets.UTF_8));
+  }
+
+  static String readString(final DataInputStream in) throws IOException {
+    return new String(readBytes(in), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Validation errors stored column by column instead of as one object per
+ * error. Consecutive errors of the same file share the path instance, and
+ * messages are expected to be canonical instances from {@link MessageTable}.
+ * Error objects are only created while the list is read.
+ *
+ * @author Nicolai Ehemann
+ */
+final class ValidationErrorList extends AbstractList<ValidationError> implements RandomAccess {
+
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private static final ValidationError.Type[] TYPES = ValidationError.Type.values();
+
+  private byte[] types;
+
+  private String[] paths;
+
+  private int[] lines;
+
+  private int[] columns;
+
+  private String[] messages;
+
+  private int size;
+
+  ValidationErrorList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  ValidationErrorList(final int capacity) {
+    types = new byte[capacity];
+    paths = new String[capacity];
+    lines = new int[capacity];
+    columns = new int[capacity];
+    messages = new String[capacity];
+  }
+
+  /**
+   * @param errors the errors to copy
+   */
+  ValidationErrorList(final Collection<ValidationError> errors) {
+    this(errors.size());
+    addAll(errors);
+  }
+
+  @Override
+  public ValidationError get(final int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return new ValidationError(TYPES[types[index]], paths[index], lines[index], columns[index], messages[index]);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean add(final ValidationError error) {
+    add(error.getType(), error.getPath(), error.getLine(), error.getColumn(), error.getMessage());
+    return true;
+  }
+
+  /**
+   * Adds an error without creating an error object
+   */
+  void add(final ValidationError.Type type, final String path, final int line, final int column, final String message) {
+    if (size == types.length) {
+      grow();
+    }
+    types[size] = (byte) type.ordinal();
+    paths[size] = size > 0 && paths[size - 1] != null && paths[size - 1].equals(path) ? paths[size - 1] : path;
+    lines[size] = line;
+    columns[size] = column;
+    messages[size] = message;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(paths, 0, size, null);
+    Arrays.fill(messages, 0, size, null);
+    size = 0;
+    modCount++;
+  }
+
+  private void grow() {
+    final int capacity = Math.max(DEFAULT_CAPACITY, types.length * 2);
+    types = Arrays.copyOf(types, capacity);
+    paths = Arrays.copyOf(paths, capacity);
+    lines = Arrays.copyOf(lines, capacity);
+    columns = Arrays.copyOf(columns, capacity);
+    messages = Arrays.copyOf(messages, capacity);
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Time spent in the phases of a validation run, and time and bytes per
+ * validated file, by document type. Recorded concurrently by the validation
+ * threads.
+ *
+ * @author Nicolai Ehemann
+ */
+class ValidationMetrics {
+
+  /**
+   * Phases of a validation run. Except for discovery and reporting, the
+   * phases run on several threads, so their times add up over all threads.
+   */
+  enum Phase {
+    /**
+     * Finding the files of the filesets
+     */
+    DISCOVERY,
+    /**
+     * Looking up cached results and files of identical content, including hashing
+     */
+    CACHE,
+    /**
+     * Waiting for file contents not read ahead yet
+     */
+    READ,
+    /**
+     * Setting up schemas and validators
+     */
+    SETUP,
+    /**
+     * Parsing and validating files
+     */
+    VALIDATION,
+    /**
+     * Dropping filtered and ignored messages
+     */
+    FILTERING,
+    /**
+     * Passing results to the reporters
+     */
+    REPORTING
+  }
+
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+  private final long startNanos = System.nanoTime();
+
+  private final Map<Phase, LongAdder> phases = new EnumMap<>(Phase.class);
+
+  private final Map<DocumentType, TypeMetrics> documentTypes = new EnumMap<>(DocumentType.class);
+
+  private final LongAdder cachedFiles = new LongAdder();
+
+  private final LongAdder duplicateFiles = new LongAdder();
+
+  private final int slowestFileCount;
+
+  /**
+   * The slowest files so far, the fastest of them first
+   */
+  private final PriorityQueue<FileMetrics> slowestFiles;
+
+  private long wallNanos;
+
+  /**
+   * @param slowestFileCount number of slowest files to keep
+   */
+  ValidationMetrics(final int slowestFileCount) {
+    this.slowestFileCount = slowestFileCount;
+    this.slowestFiles = new PriorityQueue<>(slowestFileCount + 1, Comparator.comparingLong(file -> file.nanos));
+    for (Phase phase : Phase.values()) {
+      phases.put(phase, new LongAdder());
+    }
+    for (DocumentType documentType : DocumentType.values()) {
+      documentTypes.put(documentType, new TypeMetrics());
+    }
+  }
+
+  /**
+   * @param nanos time spent in the phase, as measured with {@link System#nanoTime()}
+   */
+  void record(final Phase phase, final long nanos) {
+    phases.get(phase).add(nanos);
+  }
+
+  /**
+   * Records the validation of a file, the time is also added to the validation phase
+   */
+  void recordFile(final String file, final DocumentType documentType, final long bytes, final long nanos) {
+    record(Phase.VALIDATION, nanos);
+    final TypeMetrics typeMetrics = documentTypes.get(documentType);
+    typeMetrics.files.increment();
+    typeMetrics.bytes.add(bytes);
+    typeMetrics.nanos.add(nanos);
+    synchronized (slowestFiles) {
+      if (slowestFiles.size() < slowestFileCount || slowestFiles.peek().nanos < nanos) {
+        slowestFiles.add(new FileMetrics(file, documentType, bytes, nanos));
+        if (slowestFiles.size() > slowestFileCount) {
+          slowestFiles.poll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Records a file whose results were taken from the cache
+   */
+  void recordCachedFile() {
+    cachedFiles.increment();
+  }
+
+  /**
+   * Records a file whose results were taken from another file with the same content
+   */
+  void recordDuplicateFile() {
+    duplicateFiles.increment();
+  }
+
+  /**
+   * Ends the run, for the wall time
+   */
+  void stop() {
+    wallNanos = System.nanoTime() - startNanos;
+  }
+
+  /**
+   * Logs a summary with throughput per document type, phase times and the slowest files
+   */
+  void log(final Log log) {
+    long files = 0;
+    long bytes = 0;
+    for (TypeMetrics typeMetrics : documentTypes.values()) {
+      files += typeMetrics.files.sum();
+      bytes += typeMetrics.bytes.sum();
+    }
+    log.info(String.format("Validated %d files (%.1f MB) in %.2f s, %.1f files/s, %.2f MB/s, %d files unchanged, %d duplicates",
+        files, bytes / BYTES_PER_MEGABYTE, seconds(wallNanos), files / seconds(wallNanos),
+        bytes / BYTES_PER_MEGABYTE / seconds(wallNanos), cachedFiles.sum(), duplicateFiles.sum()));
+    for (Map.Entry<DocumentType, TypeMetrics> entry : documentTypes.entrySet()) {
+      final TypeMetrics typeMetrics = entry.getValue();
+      if (typeMetrics.files.sum() > 0) {
+        log.info(String.format("  %-5s %d files (%.1f MB) in %.2f s, %.1f files/s, %.2f MB/s", entry.getKey(),
+            typeMetrics.files.sum(), typeMetrics.bytes.sum() / BYTES_PER_MEGABYTE, seconds(typeMetrics.nanos.sum()),
+            typeMetrics.files.sum() / seconds(typeMetrics.nanos.sum()),
+            typeMetrics.bytes.sum() / BYTES_PER_MEGABYTE / seconds(typeMetrics.nanos.sum())));
+      }
+    }
+    final StringBuilder phaseTimes = new StringBuilder("Time per phase (summed over threads):");
+    for (Map.Entry<Phase, LongAdder> phase : phases.entrySet()) {
+      phaseTimes.append(String.format(" %s %.2f s", phase.getKey().name().toLowerCase(), seconds(phase.getValue().sum())));
+    }
+    log.info(phaseTimes.toString());
+    final List<FileMetrics> slowest = getSlowestFiles();
+    if (!slowest.isEmpty()) {
+      log.info("Slowest files:");
+      for (FileMetrics file : slowest) {
+        log.info(String.format("  %8.3f s %8d bytes %s", seconds(file.nanos), file.bytes, file.file));
+      }
+    }
+  }
+
+  /**
+   * Writes the metrics as JSON
+   *
+   * @throws IOException if the file can not be written
+   */
+  void write(final Path file, final String nvuVersion) throws IOException {
+    Files.createDirectories(file.getParent());
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8); JsonWriter json = new JsonWriter(writer)) {
+      json.beginObject()
+          .name("vnuVersion").value(nvuVersion)
+          .name("wallMillis").value(TimeUnit.NANOSECONDS.toMillis(wallNanos))
+          .name("cachedFiles").value(cachedFiles.sum())
+          .name("duplicateFiles").value(duplicateFiles.sum());
+      json.name("phases").beginObject();
+      for (Map.Entry<Phase, LongAdder> phase : phases.entrySet()) {
+        json.name(phase.getKey().name().toLowerCase()).beginObject()
+            .name("millis").value(TimeUnit.NANOSECONDS.toMillis(phase.getValue().sum()))
+            .endObject();
+      }
+      json.endObject();
+      json.name("documentTypes").beginObject();
+      for (Map.Entry<DocumentType, TypeMetrics> entry : documentTypes.entrySet()) {
+        final TypeMetrics typeMetrics = entry.getValue();
+        json.name(entry.getKey().name()).beginObject()
+            .name("files").value(typeMetrics.files.sum())
+            .name("bytes").value(typeMetrics.bytes.sum())
+            .name("millis").value(TimeUnit.NANOSECONDS.toMillis(typeMetrics.nanos.sum()))
+            .name("filesPerSecond").value(typeMetrics.files.sum() / seconds(typeMetrics.nanos.sum()))
+            .name("megabytesPerSecond").value(typeMetrics.bytes.sum() / BYTES_PER_MEGABYTE / seconds(typeMetrics.nanos.sum()))
+            .endObject();
+      }
+      json.endObject();
+      json.name("slowestFiles").beginArray();
+      for (FileMetrics fileMetrics : getSlowestFiles()) {
+        json.beginObject()
+            .name("file").value(fileMetrics.file)
+            .name("documentType").value(fileMetrics.documentType.name())
+            .name("bytes").value(fileMetrics.bytes)
+            .name("millis").value(TimeUnit.NANOSECONDS.toMillis(fileMetrics.nanos))
+            .endObject();
+      }
+      json.endArray();
+      json.endObject().newLine();
+    }
+  }
+
+  /**
+   * @return the slowest files, the slowest first
+   */
+  private List<FileMetrics> getSlowestFiles() {
+    final List<FileMetrics> slowest;
+    synchronized (slowestFiles) {
+      slowest = new ArrayList<>(slowestFiles);
+    }
+    slowest.sort(Comparator.comparingLong((FileMetrics file) -> file.nanos).reversed());
+    return slowest;
+  }
+
+  private static double seconds(final long nanos) {
+    return nanos / NANOS_PER_SECOND;
+  }
+
+  /**
+   * Validated files, bytes and time of a document type
+   */
+  private static final class TypeMetrics {
+
+    private final LongAdder files = new LongAdder();
+
+    private final LongAdder bytes = new LongAdder();
+
+    private final LongAdder nanos = new LongAdder();
+  }
+
+  /**
+   * Size and validation time of a file
+   */
+  private static final class FileMetrics {
+
+    private final String file;
+
+    private final DocumentType documentType;
+
+    private final long bytes;
+
+    private final long nanos;
+
+    private FileMetrics(final String file, final DocumentType documentType, final long bytes, final long nanos) {
+      this.file = file;
+      this.documentType = documentType;
+      this.bytes = bytes;
+      this.nanos = nanos;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the validation results as soon as files are validated.
+ * Reporters writing to files stream the results and finish the file when
+ * closed.
+ *
+ * @author Nicolai Ehemann
+ */
+interface ValidationReporter extends Closeable {
+
+  /**
+   * Reports the result of a validated file. Results are reported in file
+   * order, one file at a time.
+   *
+   * @param result the messages to be reported for the file
+   */
+  void report(FileValidationResult result);
+
+  /**
+   * Marks the report as complete, once all files were validated. Not
+   * called if the validation was aborted.
+   *
+   * @throws IOException if the report can not be written
+   */
+  default void finish() throws IOException {
+  }
+
+  /**
+   * Finishes the report, after all results were reported.
+   *
+   * @throws IOException if the report can not be written
+   */
+  @Override
+  default void close() throws IOException {
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin;
+
+import nu.validator.maven.plugin.configuration.DocumentType;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import nu.validator.validation.SimpleDocumentValidator;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Document validators together with the error handler they report to. The
+ * SimpleDocumentValidator is not thread safe, so every validation thread
+ * works with a worker of its own.
+ *
+ * A worker keeps one set up document validator per schema, so switching
+ * between document types does not set up the schema again. The validators
+ * are taken from the JVM wide pool and have to be returned with
+ * {@link #release()}.
+ *
+ * @author Nicolai Ehemann
+ */
+class ValidationWorker {
+
+  private final Map<String, SharedDocumentValidator> documentValidators = new HashMap<>();
+
+  private final XMLErrorHandler errorHandler;
+
+  private final BooleanSupplier aborted;
+
+  /**
+   * Time spent setting up document validators, in nanoseconds
+   */
+  private long setupNanos;
+
+  /**
+   * @param aborted condition to abort running validations on
+   */
+  ValidationWorker(final boolean asciiQuotes, final File basedir, final BooleanSupplier aborted) {
+    this.errorHandler = new XMLErrorHandler(asciiQuotes, basedir);
+    this.errorHandler.setAbortCondition(aborted);
+    this.aborted = aborted;
+  }
+
+  /**
+   * @param schemaUrl the main schema to validate with
+   * @return the document validator for the schema, acquired on first use
+   */
+  private SimpleDocumentValidator getDocumentValidator(final String schemaUrl) {
+    SharedDocumentValidator documentValidator = documentValidators.get(schemaUrl);
+    if (documentValidator == null) {
+      final long start = System.nanoTime();
+      documentValidator = SharedDocumentValidator.acquire(schemaUrl, errorHandler);
+      setupNanos += System.nanoTime() - start;
+      documentValidators.put(schemaUrl, documentValidator);
+    }
+    return documentValidator.getDocumentValidator();
+  }
+
+  /**
+   * Validates a single file, reading it first
+   *
+   * @return the validation errors of the file
+   * @throws IOException if the file can not be read
+   */
+  List<ValidationError> validate(final File file, final DocumentType documentType) throws IOException {
+    return validate(file, FilePrefetcher.read(file.toPath()), documentType);
+  }
+
+  /**
+   * Validates a single file already read
+   *
+   * @param content the content of the file, which is consumed
+   * @return the validation errors of the file
+   * @throws IOException if the content can not be parsed
+   */
+  List<ValidationError> validate(final File file, final ByteBuffer content, final DocumentType documentType) throws IOException {
+    return validate(file.getPath(), file.toURI().toURL().toString(), content, documentType);
+  }
+
+  /**
+   * Validates a single file or archive entry already read
+   *
+   * @param name the name of the file, reported if it can not be parsed at all
+   * @param systemId the URL of the file, reported along with the validation errors
+   * @param content the content of the file, which is consumed
+   * @return the validation errors of the file, up to a warning if the validation was aborted
+   * @throws IOException if the content can not be parsed
+   */
+  List<ValidationError> validate(final String name, final String systemId, final ByteBuffer content, final DocumentType documentType)
+      throws IOException {
+    errorHandler.clear();
+    final InputSource source = new InputSource(new ByteBufferInputStream(content, aborted));
+    source.setSystemId(systemId);
+    try {
+      checkFile(source, documentType);
+    } catch (SAXException | InterruptedIOException ex) {
+      errorHandler.addError(new ValidationError(ValidationError.Type.WARNING, name, -1, -1, ex.getMessage()));
+    }
+    return new ValidationErrorList(errorHandler.getErrors());
+  }
+
+  private void checkFile(final InputSource source, final DocumentType documentType) throws IOException, SAXException {
+    final String schemaUrl = getSchemaUrl(documentType);
+    final SimpleDocumentValidator documentValidator = getDocumentValidator(schemaUrl);
+    SharedDocumentValidator.beginCheck(schemaUrl);
+    try {
+      if (documentType == DocumentType.HTML) {
+        documentValidator.checkHtmlInputSource(source);
+      } else if (documentType == DocumentType.CSS) {
+        // HTML is read as UTF-8 by v.Nu, CSS is set to UTF-8 explicitly
+        source.setEncoding("UTF-8");
+        documentValidator.checkCssInputSource(source);
+      } else {
+        documentValidator.checkXmlInputSource(source);
+      }
+    } finally {
+      SharedDocumentValidator.endCheck(schemaUrl);
+    }
+  }
+
+  /**
+   * @return the main schema to check documents of the type with, CSS is checked with the HTML schema
+   */
+  private static String getSchemaUrl(final DocumentType documentType) {
+    final String schemaUrl;
+    switch (documentType) {
+      case SVG:
+        schemaUrl = NVUValidator.SCHEMA_URL_SVG;
+        break;
+      case XHTML:
+        schemaUrl = NVUValidator.SCHEMA_URL_XHTML;
+        break;
+      default:
+        schemaUrl = NVUValidator.SCHEMA_URL_HTML;
+    }
+    return schemaUrl;
+  }
+
+  /**
+   * @return the time spent setting up or acquiring document validators so far, in nanoseconds
+   */
+  long getSetupNanos() {
+    return setupNanos;
+  }
+
+  /**
+   * Returns the document validators to the JVM wide pool.
+   */
+  void release() {
+    for (SharedDocumentValidator documentValidator : documentValidators.values()) {
+      documentValidator.release();
+    }
+    documentValidators.clear();
+  }
+}
@@ -27,9 +27,10 @@ import java.io.File;
 import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 /**
@@ -38,6 +39,8 @@ import org.xml.sax.SAXParseException;
  */
 public class XMLErrorHandler implements ErrorHandler {
 
+  private static final String JAR_SCHEME = "jar:";
+
   private final boolean asciiQuotes;
 
   private final Path basePath;
@@ -45,13 +48,36 @@ public class XMLErrorHandler implements ErrorHandler {
   /**
    * List of validation errors.
    */
-  private List<ValidationError> errors = new ArrayList<>();
+  private final ValidationErrorList errors = new ValidationErrorList();
+
+  /**
+   * System id of the errors last registered, and its relative path, which is
+   * shared by all errors of a file
+   */
+  private String lastSystemId;
+
+  private String lastPath;
+
+  /**
+   * Condition to abort the validation on, checked whenever an error is registered.
+   */
+  private BooleanSupplier abortCondition = () -> false;
 
   public XMLErrorHandler(final boolean asciiQuotes, final File basedir) {
     this.asciiQuotes = asciiQuotes;
     this.basePath = Paths.get(basedir.getAbsolutePath());
   }
 
+  /**
+   * Set the condition to abort the validation on. Registering an error while
+   * the condition is met throws a SAXException, which stops the parser.
+   *
+   * @param abortCondition the condition to abort the validation on
+   */
+  public void setAbortCondition(final BooleanSupplier abortCondition) {
+    this.abortCondition = abortCondition;
+  }
+
   /**
    * Clear the list of validation errors.
    */
@@ -65,8 +91,8 @@ public class XMLErrorHandler implements ErrorHandler {
    * @param e
    */
   @Override
-  public void warning(final SAXParseException e) {
-    this.errors.add(createValidationError(Type.WARNING, e));
+  public void warning(final SAXParseException e) throws SAXException {
+    register(Type.WARNING, e);
   }
 
   /**
@@ -75,8 +101,8 @@ public class XMLErrorHandler implements ErrorHandler {
    * @param e
    */
   @Override
-  public void error(final SAXParseException e) {
-    this.errors.add(createValidationError(Type.ERROR, e));
+  public void error(final SAXParseException e) throws SAXException {
+    register(Type.ERROR, e);
   }
 
   /**
@@ -85,8 +111,8 @@ public class XMLErrorHandler implements ErrorHandler {
    * @param e
    */
   @Override
-  public void fatalError(final SAXParseException e) {
-    this.errors.add(createValidationError(Type.FATAL, e));
+  public void fatalError(final SAXParseException e) throws SAXException {
+    register(Type.FATAL, e);
   }
 
   /**
@@ -103,15 +129,42 @@ public class XMLErrorHandler implements ErrorHandler {
     this.errors.add(error);
   }
 
-  private ValidationError createValidationError(final Type type, final SAXParseException e) {
-    return new ValidationError(type, toRelativePath(e.getSystemId()), e.getLineNumber(), e.getColumnNumber(), this.asciiQuotes ? this.quotesToAscii(e.getMessage()) : e.getMessage());
+  private void register(final Type type, final SAXParseException e) throws SAXException {
+    if (abortCondition.getAsBoolean()) {
+      throw new SAXException("Validation aborted");
+    }
+    final String message = this.asciiQuotes ? MessageTable.internAscii(e.getMessage()) : MessageTable.intern(e.getMessage());
+    this.errors.add(type, getRelativePath(e.getSystemId()), e.getLineNumber(), e.getColumnNumber(), message);
   }
 
-  private String toRelativePath(final String path) {
-    return basePath.relativize(Paths.get(URI.create(path))).toString();
+  /**
+   * @return the relative path of the system id, computed once per file
+   */
+  private String getRelativePath(final String systemId) {
+    if (!systemId.equals(lastSystemId)) {
+      lastPath = toRelativePath(systemId);
+      lastSystemId = systemId;
+    }
+    return lastPath;
   }
 
-  private String quotesToAscii(final String message) {
-    return message.replace('“', '"').replace('”', '"');
+  /**
+   * @param path a file URL, the jar URL of an archive entry or the URL of a crawled page
+   * @return the path relative to the base directory, for archive entries the
+   *     relative path of the archive followed by the path of the entry, pages
+   *     keep their URL
+   */
+  private String toRelativePath(final String path) {
+    final int separator = path.indexOf(ArchiveFileset.SEPARATOR);
+    final String relativePath;
+    if (PageCrawler.isPage(path)) {
+      relativePath = path;
+    } else if (path.startsWith(JAR_SCHEME) && separator >= 0) {
+      relativePath = toRelativePath(path.substring(JAR_SCHEME.length(), separator))
+          + ArchiveFileset.SEPARATOR + URI.create(path.substring(separator + 1)).getPath().substring(1);
+    } else {
+      relativePath = basePath.relativize(Paths.get(URI.create(path))).toString();
+    }
+    return relativePath;
   }
 }
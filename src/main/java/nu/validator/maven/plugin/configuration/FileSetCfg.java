@@ -22,6 +22,10 @@
 
 package nu.validator.maven.plugin.configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 import org.apache.maven.plugins.annotations.Parameter;
 
 /**
@@ -30,13 +34,56 @@ import org.apache.maven.plugins.annotations.Parameter;
  */
 public class FileSetCfg {
 
+  private static final int DEFAULT_MAX_PAGES = 1000;
+
+  private static final int DEFAULT_MAX_DEPTH = 10;
+
   /**
    * The directory of the files to be checked
    * @since 1.0.0
    */
-  @Parameter(required = true)
+  @Parameter
   private String directory;
 
+  /**
+   * Archive (war, jar or zip) of the files to be checked, instead of a
+   * directory. The patterns apply to the paths of the archive entries.
+   * @since 1.1.0
+   */
+  @Parameter
+  private String archive;
+
+  /**
+   * Base URL of pages to be crawled and checked, instead of a directory, e.g.
+   * of a server started in pre-integration-test. Only pages below the base
+   * URL are crawled, the patterns apply to their paths relative to it.
+   * @since 1.1.0
+   */
+  @Parameter
+  private String url;
+
+  /**
+   * Sitemap listing the pages to be checked, relative to the url. Without a
+   * sitemap, links are followed from the url.
+   * @since 1.1.0
+   */
+  @Parameter
+  private String sitemap;
+
+  /**
+   * Maximum number of pages fetched when crawling the url
+   * @since 1.1.0
+   */
+  @Parameter(defaultValue = "1000")
+  private int maxPages = DEFAULT_MAX_PAGES;
+
+  /**
+   * Maximum number of links followed from the url to a page
+   * @since 1.1.0
+   */
+  @Parameter(defaultValue = "10")
+  private int maxDepth = DEFAULT_MAX_DEPTH;
+
   /**
    * Globbing pattern to filter the files in the source directory (as specified
    * by the {@link java.nio.file.FileSystem#getPathMatcher(java.lang.String)
@@ -46,6 +93,21 @@ public class FileSetCfg {
   @Parameter(defaultValue = "*")
   private String glob;
 
+  /**
+   * Globbing patterns of files to be checked, in addition to the glob
+   * @since 1.1.0
+   */
+  @Parameter
+  private List<String> includes = new ArrayList<>();
+
+  /**
+   * Globbing patterns of files not to be checked. Directories matching an
+   * exclude are not searched.
+   * @since 1.1.0
+   */
+  @Parameter
+  private List<String> excludes = new ArrayList<>();
+
   public FileSetCfg() {
   }
 
@@ -57,6 +119,59 @@ public class FileSetCfg {
     this.directory = directory;
   }
 
+  public final String getArchive() {
+    return archive;
+  }
+
+  public final void setArchive(final String archive) {
+    this.archive = archive;
+  }
+
+  public final String getUrl() {
+    return url;
+  }
+
+  public final void setUrl(final String url) {
+    this.url = url;
+  }
+
+  public final String getSitemap() {
+    return sitemap;
+  }
+
+  public final void setSitemap(final String sitemap) {
+    this.sitemap = sitemap;
+  }
+
+  public final int getMaxPages() {
+    return maxPages;
+  }
+
+  public final void setMaxPages(final int maxPages) {
+    this.maxPages = maxPages;
+  }
+
+  public final int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public final void setMaxDepth(final int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * @return the directory, archive or url of the files to be checked
+   */
+  public final String getLocation() {
+    String location = directory;
+    if (archive != null) {
+      location = archive;
+    } else if (url != null) {
+      location = url;
+    }
+    return location;
+  }
+
   public final String getGlob() {
     return glob;
   }
@@ -65,9 +180,38 @@ public class FileSetCfg {
     this.glob = glob;
   }
 
+  public final List<String> getIncludes() {
+    return includes;
+  }
+
+  public final void setIncludes(final List<String> includes) {
+    this.includes = includes;
+  }
+
+  public final List<String> getExcludes() {
+    return excludes;
+  }
+
+  public final void setExcludes(final List<String> excludes) {
+    this.excludes = excludes;
+  }
+
   public final void validate() throws MojoInvalidConfigurationException {
-    if (directory == null) {
-      throw new MojoInvalidConfigurationException("Missing required <directory> in <fileset>");
+    final long locations = Stream.of(directory, archive, url).filter(Objects::nonNull).count();
+    if (locations == 0) {
+      throw new MojoInvalidConfigurationException("Missing required <directory>, <archive> or <url> in <fileset>");
+    }
+    if (locations > 1) {
+      throw new MojoInvalidConfigurationException("Only one of <directory>, <archive> and <url> may be given in <fileset>");
+    }
+    if (url != null && !url.startsWith("http://") && !url.startsWith("https://")) {
+      throw new MojoInvalidConfigurationException("<url> in <fileset> must be an http or https URL");
+    }
+    if (maxPages < 1 || maxDepth < 0) {
+      throw new MojoInvalidConfigurationException("<maxPages> must be positive and <maxDepth> must not be negative in <fileset>");
+    }
+    if (includes.contains(null) || excludes.contains(null)) {
+      throw new MojoInvalidConfigurationException("Empty <include> or <exclude> in <fileset>");
     }
   }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020 Nicolai Ehemann
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package nu.validator.maven.plugin.configuration;
+
+/**
+ * Machine readable report formats, written to the output directory
+ *
+ * @author Nicolai Ehemann
+ */
+public enum ReportFormat {
+  /**
+   * One JSON object per message and line
+   */
+  JSONL("vnu-report.jsonl"),
+  /**
+   * Static Analysis Results Interchange Format 2.1.0
+   */
+  SARIF("vnu-report.sarif"),
+  /**
+   * JUnit XML, with a test case per file
+   */
+  JUNIT("TEST-vnu.xml");
+
+  private final String fileName;
+
+  ReportFormat(final String fileName) {
+    this.fileName = fileName;
+  }
+
+  public final String getFileName() {
+    return fileName;
+  }
+}